@@ -0,0 +1,142 @@
+// k6 load profile used to compare platform-thread and virtual-thread execution modes.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e CHAT_ID=1 -e USER_IDS=1,2,3,4 -e MODE=platform loadtest/chat-load.js
+//
+// Every user in USER_IDS must be a participant of CHAT_ID. Half of the VUs hold a WebSocket open and send
+// messages (measuring send -> NEW_MESSAGE round trip); the other half hit the REST history/unread endpoints,
+// which exercise the JDBC path.
+//
+// At the end the node's /actuator/prometheus is scraped for the connection-pool wait, and throughput, p95/p99
+// and that wait are written to loadtest/results/<MODE>.json. Restart the node before each run: the Hikari
+// acquire timer counts from startup.
+import http from 'k6/http';
+import ws from 'k6/ws';
+import { check, sleep } from 'k6';
+import { Trend, Counter, Gauge } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const WS_URL = BASE_URL.replace(/^http/, 'ws') + '/ws';
+const CHAT_ID = __ENV.CHAT_ID || '1';
+const USER_IDS = (__ENV.USER_IDS || '1,2').split(',');
+const SESSION_SECONDS = Number(__ENV.SESSION_SECONDS || 30);
+const MODE = __ENV.MODE || 'platform';
+
+const wsRoundTrip = new Trend('chat_ws_round_trip_ms', true);
+const wsErrors = new Counter('chat_ws_errors');
+const wsSent = new Counter('chat_ws_messages_sent');
+const poolAcquireMeanMs = new Gauge('chat_pool_acquire_mean_ms');
+const poolAcquireMaxMs = new Gauge('chat_pool_acquire_max_ms');
+const poolPendingMax = new Gauge('chat_pool_pending');
+
+export const options = {
+    scenarios: {
+        websocket: {
+            executor: 'ramping-vus',
+            exec: 'websocket',
+            startVUs: 0,
+            stages: [
+                { duration: '1m', target: Number(__ENV.WS_VUS || 500) },
+                { duration: '3m', target: Number(__ENV.WS_VUS || 500) },
+                { duration: '30s', target: 0 },
+            ],
+        },
+        rest: {
+            executor: 'constant-arrival-rate',
+            exec: 'rest',
+            rate: Number(__ENV.REST_RPS || 200),
+            timeUnit: '1s',
+            duration: '4m30s',
+            preAllocatedVUs: 100,
+            maxVUs: 1000,
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        chat_ws_round_trip_ms: ['p(95)<120'],
+        http_req_duration: ['p(95)<200'],
+    },
+};
+
+function userFor(vu) {
+    return USER_IDS[vu % USER_IDS.length];
+}
+
+export function websocket() {
+    const userId = userFor(__VU);
+    const res = ws.connect(WS_URL, { headers: { 'X-User-Id': userId } }, (socket) => {
+        const pending = {};
+
+        socket.on('open', () => {
+            socket.setInterval(() => {
+                const clientMessageId = `${__VU}-${__ITER}-${Date.now()}`;
+                pending[clientMessageId] = Date.now();
+                wsSent.add(1);
+                socket.send(JSON.stringify({
+                    type: 'SEND_MESSAGE',
+                    chatId: Number(CHAT_ID),
+                    body: clientMessageId,
+                    clientMessageId,
+                }));
+            }, 1000);
+        });
+
+        socket.on('message', (raw) => {
+            const frame = JSON.parse(raw);
+            if (frame.type === 'NEW_MESSAGE' && pending[frame.payload.body] !== undefined) {
+                wsRoundTrip.add(Date.now() - pending[frame.payload.body]);
+                delete pending[frame.payload.body];
+            } else if (frame.type === 'ERROR') {
+                wsErrors.add(1);
+            }
+        });
+
+        socket.on('error', () => wsErrors.add(1));
+        socket.setTimeout(() => socket.close(), SESSION_SECONDS * 1000);
+    });
+    check(res, { 'ws upgraded': (r) => r && r.status === 101 });
+}
+
+export function rest() {
+    const params = { headers: { 'X-User-Id': userFor(__VU) } };
+    const history = http.get(`${BASE_URL}/chats/${CHAT_ID}/messages?limit=50`, params);
+    check(history, { 'history 200': (r) => r.status === 200 });
+    const unread = http.get(`${BASE_URL}/chats/${CHAT_ID}/messages/unread`, params);
+    check(unread, { 'unread 200': (r) => r.status === 200 });
+    sleep(0.1);
+}
+
+function scrape(metrics, name) {
+    const line = metrics.split('\n').find((l) => l.startsWith(name + '{') || l.startsWith(name + ' '));
+    return line ? Number(line.substring(line.lastIndexOf(' ') + 1)) : NaN;
+}
+
+export function teardown() {
+    const metrics = http.get(`${BASE_URL}/actuator/prometheus`).body || '';
+    const count = scrape(metrics, 'hikaricp_connections_acquire_seconds_count');
+    const sum = scrape(metrics, 'hikaricp_connections_acquire_seconds_sum');
+    poolAcquireMeanMs.add(count > 0 ? (sum / count) * 1000 : 0);
+    poolAcquireMaxMs.add(scrape(metrics, 'hikaricp_connections_acquire_seconds_max') * 1000);
+    poolPendingMax.add(scrape(metrics, 'hikaricp_connections_pending'));
+}
+
+export function handleSummary(data) {
+    const m = data.metrics;
+    const value = (name, stat) => (m[name] ? m[name].values[stat] : null);
+    const result = {
+        mode: MODE,
+        wsVus: Number(__ENV.WS_VUS || 500),
+        restRps: Number(__ENV.REST_RPS || 200),
+        wsMessagesPerSecond: value('chat_ws_messages_sent', 'rate'),
+        wsRoundTripMs: { p95: value('chat_ws_round_trip_ms', 'p(95)'), p99: value('chat_ws_round_trip_ms', 'p(99)') },
+        httpRequestsPerSecond: value('http_reqs', 'rate'),
+        httpDurationMs: { p95: value('http_req_duration', 'p(95)'), p99: value('http_req_duration', 'p(99)') },
+        wsErrors: value('chat_ws_errors', 'count'),
+        httpFailedRate: value('http_req_failed', 'rate'),
+        poolAcquireMs: { mean: value('chat_pool_acquire_mean_ms', 'value'), max: value('chat_pool_acquire_max_ms', 'value') },
+        poolPendingAtEnd: value('chat_pool_pending', 'value'),
+    };
+    return {
+        [`loadtest/results/${MODE}.json`]: JSON.stringify(result, null, 2),
+        stdout: JSON.stringify(result, null, 2) + '\n',
+    };
+}
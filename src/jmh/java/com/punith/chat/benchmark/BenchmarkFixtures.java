@@ -0,0 +1,151 @@
+package com.punith.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.punith.chat.messaging.MessageLatencyMetrics;
+import com.punith.chat.repository.ChatParticipantRepository;
+import com.punith.chat.service.ChatService;
+import com.punith.chat.service.InboxCache;
+import com.punith.chat.service.ParticipantDirectory;
+import com.punith.chat.session.RedisSessionService;
+import com.punith.chat.ws.ChatWebSocketHandler;
+import com.punith.chat.ws.EphemeralRelay;
+import com.punith.chat.ws.FrameAdmission;
+import com.punith.chat.ws.ReplayBuffer;
+import com.punith.chat.ws.SessionRegistry;
+import com.punith.chat.ws.WsInboundDecoder;
+import com.punith.chat.ws.WsOutboundDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Offline stand-ins for the beans on the WebSocket hot path: no Redis, Kafka or MySQL is touched.
+ * Repositories and sessions are JDK proxies; sends are counted and discarded.
+ */
+final class BenchmarkFixtures {
+
+    static final String NODE_ID = "bench-node";
+
+    private BenchmarkFixtures() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    /**
+     * A participant repository that answers {@code findUserIdsByChatId} from the given function.
+     */
+    static ChatParticipantRepository participantRepository(LongFunction<List<Long>> participantsByChat) {
+        return (ChatParticipantRepository) Proxy.newProxyInstance(
+                ChatParticipantRepository.class.getClassLoader(),
+                new Class<?>[]{ChatParticipantRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findUserIdsByChatId" -> participantsByChat.apply((Long) args[0]);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubChatParticipantRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static ParticipantDirectory participantDirectory(LongFunction<List<Long>> participantsByChat,
+                                                     MeterRegistry meterRegistry) {
+        return new ParticipantDirectory(participantRepository(participantsByChat), 50_000, meterRegistry);
+    }
+
+    static ChatWebSocketHandler handler(ParticipantDirectory participantDirectory,
+                                        ObjectMapper objectMapper,
+                                        MeterRegistry meterRegistry) {
+        ChatService chatService = new ChatService(null, null, null, participantDirectory, null, null);
+        return new ChatWebSocketHandler(chatService, null, null, null, new NoopSessionService(),
+                objectMapper, outboundDispatcher(meterRegistry), replayBuffer(meterRegistry),
+                new InboxCache(null, null, participantDirectory, false, 900, meterRegistry), sessionRegistry(),
+                ephemeralRelay(meterRegistry), frameAdmission(meterRegistry), new WsInboundDecoder(objectMapper),
+                NODE_ID, meterRegistry);
+    }
+
+    static WsOutboundDispatcher outboundDispatcher(MeterRegistry meterRegistry) {
+        return new WsOutboundDispatcher(
+                1024, 5_000, com.punith.chat.ws.OverflowPolicy.DROP_OLDEST, 0, NODE_ID,
+                meterRegistry, new MessageLatencyMetrics(NODE_ID, meterRegistry), new StandardEnvironment());
+    }
+
+    /**
+     * Never started, so signals only accumulate; nothing is flushed to Redis.
+     */
+    static EphemeralRelay ephemeralRelay(MeterRegistry meterRegistry) {
+        return new EphemeralRelay(null, null, null, NODE_ID, 6_000, 3_000, 250, 1_000, 30_000, 50, 200, meterRegistry);
+    }
+
+    /**
+     * Rate limits only; the overload check is never reached because no Kafka-bound frame is handled.
+     */
+    static FrameAdmission frameAdmission(MeterRegistry meterRegistry) {
+        return new FrameAdmission(30, 60, 10, 30, 20, 50, 20_000, 500_000, null, null, null, NODE_ID,
+                meterRegistry);
+    }
+
+    static SessionRegistry sessionRegistry() {
+        return new SessionRegistry(65_536);
+    }
+
+    static ReplayBuffer replayBuffer(MeterRegistry meterRegistry) {
+        return new ReplayBuffer(128, 10_000, meterRegistry);
+    }
+
+    static MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    /**
+     * An always-open session for {@code userId} whose writes only bump {@code sent}.
+     */
+    static WebSocketSession session(String id, long userId, AtomicLong sent) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put("X-User-Id", Long.toString(userId));
+        URI uri = URI.create("ws://localhost/ws");
+        return (WebSocketSession) Proxy.newProxyInstance(
+                WebSocketSession.class.getClassLoader(),
+                new Class<?>[]{WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "getAttributes" -> attributes;
+                    case "getUri" -> uri;
+                    case "isOpen" -> true;
+                    case "sendMessage" -> {
+                        sent.incrementAndGet();
+                        yield null;
+                    }
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubSession[" + id + "]";
+                    default -> null;
+                });
+    }
+
+    private static final class NoopSessionService extends RedisSessionService {
+
+        NoopSessionService() {
+            super(null, NODE_ID, 30_000, 10_000, 500, 30, meterRegistry());
+        }
+
+        @Override
+        public void registerSession(Long userId, String sessionId) {
+        }
+
+        @Override
+        public void unregisterSession(Long userId, String sessionId, boolean lastLocalSession) {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.punith.chat.benchmark;
+
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.codec.EventEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka/Redis event encoding and decoding per {@code chat.events.encoding}.
+ * Payload sizes are printed once per trial, since JMH only reports time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public EventEncoding encoding;
+
+    private EventCodec codec;
+    private NewMessageFanoutEvent newMessage;
+    private ReadReceiptFanoutEvent readReceipt;
+    private byte[] newMessageBytes;
+    private byte[] readReceiptBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec = new EventCodec(BenchmarkFixtures.objectMapper(), encoding);
+        long now = System.currentTimeMillis();
+        newMessage = new NewMessageFanoutEvent(1_000_001L, 42L, 7L,
+                "hey, are we still on for tonight?", "2025-01-01T12:00:00Z", now, now, 1_234L);
+        readReceipt = new ReadReceiptFanoutEvent(42L, 7L,
+                List.of(1_000_001L, 1_000_002L, 1_000_003L, 1_000_004L, 1_000_005L, 1_000_006L),
+                1_000_006L, "2025-01-01T12:00:05Z");
+        newMessageBytes = codec.encode(newMessage);
+        readReceiptBytes = codec.encode(readReceipt);
+        System.out.printf("%n%s: NEW_MESSAGE %d bytes, READ_RECEIPT %d bytes%n",
+                encoding, newMessageBytes.length, readReceiptBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeNewMessage() throws Exception {
+        return codec.encode(newMessage);
+    }
+
+    @Benchmark
+    public NewMessageFanoutEvent decodeNewMessage() throws Exception {
+        return codec.decode(newMessageBytes, NewMessageFanoutEvent.class);
+    }
+
+    @Benchmark
+    public byte[] encodeReadReceipt() throws Exception {
+        return codec.encode(readReceipt);
+    }
+
+    @Benchmark
+    public ReadReceiptFanoutEvent decodeReadReceipt() throws Exception {
+        return codec.decode(readReceiptBytes, ReadReceiptFanoutEvent.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.punith.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.FanoutChannels;
+import com.punith.chat.messaging.MessageLatencyMetrics;
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.codec.EventEncoding;
+import com.punith.chat.service.ParticipantDirectory;
+import com.punith.chat.ws.ChatWebSocketHandler;
+import com.punith.chat.ws.WsFanoutSubscriber;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One NEW_MESSAGE fanned out to a chat whose participants each hold one local session.
+ * {@code broadcast} measures the handler's per-recipient loop (encode once + enqueue per session);
+ * {@code subscriberOnMessage} adds the Redis listener's channel dispatch and event parsing in front of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanoutBenchmark {
+
+    private static final long CHAT_ID = 42L;
+
+    @Param({"1", "10", "100", "1000"})
+    public int recipients;
+
+    private ChatWebSocketHandler handler;
+    private WsFanoutSubscriber subscriber;
+    private NewMessageFanoutEvent event;
+    private Message redisMessage;
+    private final AtomicLong sent = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Long> participants = new ArrayList<>(recipients);
+        for (long userId = 1; userId <= recipients; userId++) {
+            participants.add(userId);
+        }
+
+        MeterRegistry meterRegistry = BenchmarkFixtures.meterRegistry();
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        ParticipantDirectory directory = BenchmarkFixtures.participantDirectory(chatId -> participants, meterRegistry);
+        handler = BenchmarkFixtures.handler(directory, objectMapper, meterRegistry);
+        EventCodec eventCodec = new EventCodec(objectMapper, EventEncoding.JSON);
+        subscriber = new WsFanoutSubscriber(eventCodec, handler, directory,
+                new MessageLatencyMetrics(BenchmarkFixtures.NODE_ID, meterRegistry),
+                BenchmarkFixtures.replayBuffer(meterRegistry), BenchmarkFixtures.NODE_ID);
+
+        for (long userId : participants) {
+            handler.afterConnectionEstablished(BenchmarkFixtures.session("s-" + userId, userId, sent));
+        }
+
+        event = new NewMessageFanoutEvent(1_000_001L, CHAT_ID, 1L,
+                "hey, are we still on for tonight?", "2025-01-01T12:00:00Z",
+                System.currentTimeMillis(), System.currentTimeMillis(), 1_234L);
+        redisMessage = new DefaultMessage(
+                FanoutChannels.newMessages(BenchmarkFixtures.NODE_ID).getBytes(StandardCharsets.UTF_8),
+                eventCodec.encode(event));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (sent.get() == 0) {
+            throw new IllegalStateException("fan-out never reached a session");
+        }
+    }
+
+    @Benchmark
+    public void broadcast() {
+        handler.broadcastNewMessageFanout(event);
+    }
+
+    @Benchmark
+    public void subscriberOnMessage() {
+        subscriber.onMessage(redisMessage, null);
+    }
+}
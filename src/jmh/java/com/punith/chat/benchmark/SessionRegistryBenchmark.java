@@ -0,0 +1,80 @@
+package com.punith.chat.benchmark;
+
+import com.punith.chat.service.ParticipantDirectory;
+import com.punith.chat.ws.ChatWebSocketHandler;
+import com.punith.chat.ws.SessionRegistry;
+import com.punith.chat.ws.WsOutboundDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of the {@code chat_ws_active_sessions} gauge read and of a 500-member group fan-out lookup on a heavily
+ * loaded node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionRegistryBenchmark {
+
+    @Param({"100000", "500000"})
+    public int sessions;
+
+    private ChatWebSocketHandler handler;
+    private SessionRegistry registry;
+    private long[] groupMembers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MeterRegistry meterRegistry = BenchmarkFixtures.meterRegistry();
+        ParticipantDirectory directory = BenchmarkFixtures.participantDirectory(chatId -> List.of(), meterRegistry);
+        handler = BenchmarkFixtures.handler(directory, BenchmarkFixtures.objectMapper(), meterRegistry);
+
+        WsOutboundDispatcher dispatcher = BenchmarkFixtures.outboundDispatcher(meterRegistry);
+        registry = BenchmarkFixtures.sessionRegistry();
+
+        AtomicLong sent = new AtomicLong();
+        for (int i = 0; i < sessions; i++) {
+            // ~2 sessions per user, like a phone plus a browser tab
+            WebSocketSession session = BenchmarkFixtures.session("s-" + i, i / 2, sent);
+            handler.afterConnectionEstablished(session);
+            registry.add(i / 2, dispatcher.open(session));
+        }
+
+        Random random = new Random(42);
+        groupMembers = new long[500];
+        for (int i = 0; i < groupMembers.length; i++) {
+            groupMembers[i] = random.nextInt(sessions);
+        }
+    }
+
+    @Benchmark
+    public int totalActiveSessions() {
+        return handler.totalActiveSessions();
+    }
+
+    @Benchmark
+    public void groupLookup(Blackhole blackhole) {
+        registry.forEachSession(groupMembers, blackhole::consume);
+    }
+}
@@ -0,0 +1,83 @@
+package com.punith.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.codec.EventEncoding;
+import com.punith.chat.ws.ChatWebSocketHandler.NewMessagePayload;
+import com.punith.chat.ws.ChatWebSocketHandler.WsOutboundWrapper;
+import com.punith.chat.ws.WsInboundDecoder;
+import com.punith.chat.ws.WsInboundMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound frame decoding and outbound frame encoding, without any socket or broker. {@code sendMessageToRecord}
+ * is the whole SEND_MESSAGE path from frame bytes to Kafka record value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WsJsonBenchmark {
+
+    private static final byte[] SEND_MESSAGE = """
+            {"type":"SEND_MESSAGE","chatId":42,"body":"hey, are we still on for tonight?","clientMessageId":"c0ffee-0001"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] READ_MESSAGES = """
+            {"type":"READ_MESSAGES","chatId":42,"messageIds":[1001,1002,1003,1004,1005,1006,1007,1008]}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"JSON", "BINARY"})
+    public EventEncoding encoding;
+
+    private ObjectMapper objectMapper;
+    private WsInboundDecoder decoder;
+    private EventCodec eventCodec;
+    private WsOutboundWrapper<NewMessagePayload> newMessage;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkFixtures.objectMapper();
+        decoder = new WsInboundDecoder(objectMapper);
+        eventCodec = new EventCodec(objectMapper, encoding);
+        newMessage = new WsOutboundWrapper<>("NEW_MESSAGE", new NewMessagePayload(
+                1_000_001L, 42L, 7L, "hey, are we still on for tonight?", "2025-01-01T12:00:00Z", 1_234L));
+    }
+
+    @Benchmark
+    public WsInboundMessage decodeSendMessage() throws Exception {
+        return decoder.decode(SEND_MESSAGE);
+    }
+
+    @Benchmark
+    public WsInboundMessage decodeReadMessages() throws Exception {
+        return decoder.decode(READ_MESSAGES);
+    }
+
+    @Benchmark
+    public byte[] sendMessageToRecord() throws Exception {
+        WsInboundMessage inbound = decoder.decode(SEND_MESSAGE);
+        return eventCodec.encodeChatMessage(inbound.chatId, 7L, inbound.body(), inbound.bodyOffset(),
+                inbound.bodyLength(), inbound.clientMessageId, 1_700_000_000_000L);
+    }
+
+    @Benchmark
+    public byte[] encodeNewMessage() throws Exception {
+        return objectMapper.writeValueAsBytes(newMessage);
+    }
+}
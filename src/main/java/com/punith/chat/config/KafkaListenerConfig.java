@@ -0,0 +1,40 @@
+package com.punith.chat.config;
+
+import com.punith.chat.messaging.ChatMessageConsumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * Listener container for {@link ChatMessageConsumer}, which commits offsets itself as records finish out of
+ * order. The container is set to MANUAL acks and never acknowledged, so it commits nothing on its own. Polls and
+ * idle events come every {@code chat.messages.consumer.idle-interval-ms}, which bounds how long finished offsets
+ * wait for a commit and paused partitions wait to be resumed. Every other setting comes from
+ * {@code spring.kafka.listener.*}, like the default container factory.
+ */
+@Configuration
+public class KafkaListenerConfig {
+
+    public static final String CHAT_MESSAGE_CONTAINER_FACTORY = "chatMessageListenerContainerFactory";
+
+    @Bean(name = CHAT_MESSAGE_CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> chatMessageListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            ChatMessageConsumer chatMessageConsumer,
+            @Value("${chat.messages.consumer.idle-interval-ms:200}") long idleIntervalMs) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+
+        ContainerProperties properties = factory.getContainerProperties();
+        properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        properties.setPollTimeout(idleIntervalMs);
+        properties.setIdleEventInterval(idleIntervalMs);
+        properties.setConsumerRebalanceListener(chatMessageConsumer);
+        return factory;
+    }
+}
@@ -1,27 +1,40 @@
 package com.punith.chat.config;
 
+import com.punith.chat.messaging.FanoutChannels;
 import com.punith.chat.ws.WsFanoutSubscriber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
+@ConditionalOnProperty(name = "chat.transport.mode", havingValue = "kafka", matchIfMissing = true)
 public class RedisPubSubConfig {
 
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
             RedisConnectionFactory connectionFactory,
-            WsFanoutSubscriber subscriber
+            WsFanoutSubscriber subscriber,
+            @Value("${ws.node-id:node-1}") String nodeId,
+            Environment environment
     ) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
+        if (VirtualThreadConfig.isActive(environment)) {
+            container.setTaskExecutor(VirtualThreadConfig.virtualExecutor("redis-fanout-"));
+        }
 
-        // subscribe to channels
-        container.addMessageListener(subscriber, new ChannelTopic("ws.fanout.messages"));
-        container.addMessageListener(subscriber, new ChannelTopic("ws.fanout.read-receipts"));
-        container.addMessageListener(subscriber, new ChannelTopic("ws.fanout.message-status"));
+        // chat events are addressed to this node only; membership changes go to every node
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.newMessages(nodeId)));
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.readReceipts(nodeId)));
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.messageStatus(nodeId)));
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.typing(nodeId)));
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.presence(nodeId)));
+        container.addMessageListener(subscriber, new ChannelTopic(FanoutChannels.MEMBERSHIP));
 
         return container;
     }
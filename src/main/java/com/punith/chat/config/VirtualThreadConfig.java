@@ -0,0 +1,71 @@
+package com.punith.chat.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import javax.sql.DataSource;
+
+/**
+ * Extra wiring for {@code spring.threads.virtual.enabled=true} on Java 21+.
+ * Spring Boot already moves Tomcat request handling and the {@code @KafkaListener} containers onto virtual
+ * threads; the Redis fan-out container and the WebSocket outbound dispatcher opt in via {@link #isActive},
+ * and the JDBC pool is fronted by a {@link JdbcConcurrencyLimiter}.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    public static boolean isActive(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    public static SimpleAsyncTaskExecutor virtualExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    @Bean
+    static BeanPostProcessor jdbcConcurrencyLimiterPostProcessor(Environment environment,
+                                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof JdbcConcurrencyLimiter) {
+                    return bean;
+                }
+
+                int maxConcurrent = environment.getProperty("chat.jdbc.max-concurrent", Integer.class, 0);
+                if (maxConcurrent <= 0) {
+                    maxConcurrent = dataSource instanceof HikariDataSource hikari
+                            ? hikari.getMaximumPoolSize()
+                            : 10;
+                }
+                long acquireTimeoutMs = environment.getProperty("chat.jdbc.acquire-timeout-ms", Long.class, 30_000L);
+
+                JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(dataSource, maxConcurrent, acquireTimeoutMs);
+                meterRegistry.ifAvailable(registry -> {
+                    String nodeId = environment.getProperty("ws.node-id", "node-1");
+                    Gauge.builder("chat_jdbc_permits_available", limiter, JdbcConcurrencyLimiter::availablePermits)
+                            .description("JDBC connection permits free under virtual-thread mode")
+                            .tag("nodeId", nodeId)
+                            .register(registry);
+                    Gauge.builder("chat_jdbc_permit_waiters", limiter, JdbcConcurrencyLimiter::waitingThreads)
+                            .description("Threads parked waiting for a JDBC connection permit")
+                            .tag("nodeId", nodeId)
+                            .register(registry);
+                });
+                return limiter;
+            }
+        };
+    }
+}
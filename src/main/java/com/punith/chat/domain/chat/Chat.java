@@ -16,6 +16,8 @@ import java.time.ZoneOffset;
 @NoArgsConstructor
 public class Chat {
 
+    public static final int LAST_MESSAGE_PREVIEW_LENGTH = 256;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -33,10 +35,42 @@ public class Chat {
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
 
+    // Denormalized copy of the newest message, maintained by ChatRepository.updateLastMessage
+    // so inbox listings never have to look into the messages table.
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_sender_id")
+    private Long lastMessageSenderId;
+
+    @Column(name = "last_message_body", length = LAST_MESSAGE_PREVIEW_LENGTH)
+    private String lastMessageBody;
+
+    @Column(name = "last_message_at")
+    private OffsetDateTime lastMessageAt;
+
+    @Column(name = "last_activity_at")
+    private OffsetDateTime lastActivityAt;
+
+    // Highest message seq handed out in this chat. Only ever changed by MessageBulkRepository.allocateSeqs,
+    // so Hibernate never writes it back from a stale entity.
+    @Column(name = "last_seq", insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long lastSeq;
+
+    public static String lastMessagePreview(String body) {
+        return body.length() > LAST_MESSAGE_PREVIEW_LENGTH
+                ? body.substring(0, LAST_MESSAGE_PREVIEW_LENGTH)
+                : body;
+    }
+
     @PrePersist
     public void prePersist() {
         if (createdAt == null) {
             createdAt = OffsetDateTime.now(ZoneOffset.UTC);
         }
+        if (lastActivityAt == null) {
+            lastActivityAt = createdAt;
+        }
     }
 }
@@ -39,6 +39,9 @@ public class ChatParticipant {
     @Column(name = "joined_at", nullable = false, updatable = false)
     private OffsetDateTime joinedAt;
 
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
     @PrePersist
     public void prePersist() {
         if (joinedAt == null) {
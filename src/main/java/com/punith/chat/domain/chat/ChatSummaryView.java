@@ -0,0 +1,17 @@
+package com.punith.chat.domain.chat;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One inbox row: a chat's denormalized last message plus the reader's unread count, read in a single query.
+ */
+public record ChatSummaryView(
+        Long chatId,
+        String title,
+        boolean group,
+        String lastMessageBody,
+        Long lastMessageSenderId,
+        OffsetDateTime lastMessageAt,
+        OffsetDateTime lastActivityAt,
+        Long unreadCount
+) {}
@@ -14,12 +14,18 @@ import java.time.ZoneOffset;
 @Table(
         name = "messages",
         indexes = {
-                @Index(name = "idx_messages_chat_created_at", columnList = "chat_id, created_at")
+                @Index(name = "idx_messages_chat_created_at", columnList = "chat_id, created_at"),
+                @Index(name = "idx_messages_chat_id_id", columnList = "chat_id, id")
         },
         uniqueConstraints = {
                 @UniqueConstraint(
                         name = "uk_chat_client_msg_id",
                         columnNames = {"chat_id", "client_msg_id"}
+                ),
+                // also the range index for SYNC (everything after a seq)
+                @UniqueConstraint(
+                        name = "uk_messages_chat_seq",
+                        columnNames = {"chat_id", "seq"}
                 )
         }
 )
@@ -51,6 +57,10 @@ public class Message {
     @Column(name = "client_msg_id", length = 64)
     private String clientMessageId;
 
+    /** Position within the chat, gapless and starting at 1; see MessageBulkRepository#allocateSeqs. */
+    @Column(name = "seq")
+    private Long seq;
+
     @PrePersist
     public void prePersist() {
         if (createdAt == null) {
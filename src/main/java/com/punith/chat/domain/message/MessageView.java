@@ -0,0 +1,16 @@
+package com.punith.chat.domain.message;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Read-only projection of a message row. Chat and sender are carried as ids, so listing a page never
+ * initializes the lazy {@code chat}/{@code sender} associations.
+ */
+public record MessageView(
+        Long id,
+        Long chatId,
+        Long senderId,
+        String body,
+        OffsetDateTime createdAt,
+        Long seq
+) {}
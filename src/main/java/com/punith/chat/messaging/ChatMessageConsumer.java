@@ -1,39 +1,120 @@
 package com.punith.chat.messaging;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.config.KafkaListenerConfig;
+import com.punith.chat.config.VirtualThreadConfig;
 import com.punith.chat.domain.message.Message;
+import com.punith.chat.service.ChatService;
+import com.punith.chat.service.InboxCache;
 import com.punith.chat.service.MessageService;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.TopicBatchListener;
 import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
 import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
+import com.punith.chat.messaging.MessageLatencyMetrics.Stage;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists and fans out {@code chat.messages}. Polled records are queued per chat, and the queues outlive the
+ * poll: {@code chat.messages.consumer.concurrency} workers take ready chats in turn, up to
+ * {@code chat.messages.consumer.max-batch} records per transaction, each chat in order and on one worker at a
+ * time. A hot chat's backlog is written in slices while the other workers keep serving the other chats, and
+ * the listener returns without waiting for any of it.
+ * <p>
+ * Under Kafka the container does not commit (ack mode MANUAL, never acknowledged). Each partition's lowest
+ * unfinished offset is committed from the consumer thread on every poll and idle event, and on revocation.
+ * Once {@code chat.messages.consumer.max-in-flight} records are queued or running, the assigned partitions
+ * are paused until half of them are done. The in-memory transport has no offsets; its drain thread simply
+ * waits for that capacity instead.
+ */
 @Service
-public class ChatMessageConsumer {
+public class ChatMessageConsumer implements TopicBatchListener, ConsumerAwareRebalanceListener, SmartLifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(ChatMessageConsumer.class);
+    private static final String TOPIC = "chat.messages";
+    private static final String DLQ_TOPIC = "chat.messages.dlq";
+    static final String LISTENER_ID = "chat-message-processor";
 
-    private final ObjectMapper objectMapper;
+    private final EventCodec eventCodec;
     private final MessageService messageService;
+    private final ChatService chatService;
     private final WsFanoutPublisher wsFanoutPublisher;
     private final DlqPublisher dlqPublisher;
+    private final MessageLatencyMetrics latencyMetrics;
+    private final InboxCache inboxCache;
     private final Counter messagesProcessedCounter;
     private final Counter messagesFailedCounter;
+    private final Counter pausesCounter;
+    private final int workers;
+    private final int maxBatch;
+    private final int maxInFlight;
+    private final int resumeBelow;
+    private final Environment environment;
+
+    /** Chats with queued or running records; a chat is present exactly while it is ready or held by a worker. */
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<ChatQueue> ready = new LinkedBlockingQueue<>();
+    private final PartitionOffsets offsets = new PartitionOffsets();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object capacity = new Object();
+    /** Partitions this listener paused, so partitions paused by the container itself are never resumed here. */
+    private final Set<TopicPartition> throttled = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private Executor workerExecutor;
 
-    public ChatMessageConsumer(ObjectMapper objectMapper,
+    public ChatMessageConsumer(EventCodec eventCodec,
                                MessageService messageService,
+                               ChatService chatService,
                                WsFanoutPublisher wsFanoutPublisher,
                                DlqPublisher dlqPublisher,
-                               MeterRegistry meterRegistry) {
-        this.objectMapper = objectMapper;
+                               MessageLatencyMetrics latencyMetrics,
+                               InboxCache inboxCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${chat.messages.consumer.concurrency:4}") int concurrency,
+                               @Value("${chat.messages.consumer.max-batch:500}") int maxBatch,
+                               @Value("${chat.messages.consumer.max-in-flight:5000}") int maxInFlight,
+                               Environment environment) {
+        this.eventCodec = eventCodec;
         this.messageService = messageService;
+        this.chatService = chatService;
         this.wsFanoutPublisher = wsFanoutPublisher;
         this.dlqPublisher = dlqPublisher;
+        this.latencyMetrics = latencyMetrics;
+        this.inboxCache = inboxCache;
         this.messagesProcessedCounter = Counter.builder("chat_messages_processed_total")
                 .description("Total chat messages successfully processed from Kafka")
                 .register(meterRegistry);
@@ -42,54 +123,406 @@ public class ChatMessageConsumer {
                 .description("Total chat message events that failed processing")
                 .register(meterRegistry);
 
+        this.pausesCounter = Counter.builder("chat_messages_consumer_pauses_total")
+                .description("Times intake stopped because max-in-flight records were queued or running")
+                .register(meterRegistry);
+
+        Gauge.builder("chat_messages_in_flight", inFlight, AtomicInteger::get)
+                .description("Chat message records polled but not yet persisted and published")
+                .register(meterRegistry);
+
+        this.workers = Math.max(1, concurrency);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxInFlight = Math.max(this.maxBatch, maxInFlight);
+        this.resumeBelow = this.maxInFlight / 2;
+        this.environment = environment;
+    }
+
+    @Override
+    public String topic() {
+        return TOPIC;
+    }
+
+    /**
+     * In-memory transport: queues the batch, then holds the partition's drain thread while intake is full.
+     */
+    @Override
+    public void onBatch(List<ConsumerRecord<String, byte[]>> records) {
+        dispatch(records);
+        awaitCapacity();
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = TOPIC, groupId = "chat-message-processor", batch = "true",
+            containerFactory = KafkaListenerConfig.CHAT_MESSAGE_CONTAINER_FACTORY,
+            autoStartup = KAFKA_AUTO_STARTUP)
+    public void consume(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        dispatch(records);
+        commitAndThrottle(consumer);
+    }
+
+    /**
+     * Idle events are published on the consumer thread, so finished offsets are committed and paused partitions
+     * resumed even while no records arrive (which is always the case while paused).
+     */
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        commitAndThrottle(event.getConsumer());
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        throttled.removeAll(partitions);
+        Map<TopicPartition, Long> last = offsets.revoke(partitions);
+        if (last.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(toOffsets(last));
+        } catch (Exception e) {
+            // records after the last successful commit are redelivered to the new owner; persisting is idempotent
+            log.warn("Failed to commit chat message offsets {} on revocation", last, e);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        throttled.removeAll(partitions);
+        offsets.revoke(partitions);
+    }
+
+    void dispatch(List<ConsumerRecord<String, byte[]>> records) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            latencyMetrics.recordSince(Stage.CONSUMER_LAG, record.timestamp());
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            ChatMessageEvent event;
+            try {
+                event = eventCodec.decode(record.value(), ChatMessageEvent.class);
+                chatService.requireParticipant(event.chatId(), event.senderId());
+            } catch (Exception e) {
+                fail(record, e);
+                offsets.skipped(partition, record.offset());
+                continue;
+            }
+
+            offsets.started(partition, record.offset());
+            inFlight.incrementAndGet();
+            Pending pending = new Pending(record, event);
+            chats.compute(event.chatId(), (chatId, queue) -> {
+                if (queue == null) {
+                    queue = new ChatQueue(chatId);
+                    ready.add(queue);
+                }
+                queue.pending.add(pending);
+                return queue;
+            });
+        }
+    }
+
+    private void commitAndThrottle(Consumer<?, ?> consumer) {
+        Map<TopicPartition, Long> positions = offsets.committable();
+        if (!positions.isEmpty()) {
+            consumer.commitAsync(toOffsets(positions), (committed, e) -> {
+                if (e != null) {
+                    // a later commit covers these offsets; at worst they are redelivered
+                    log.warn("Failed to commit chat message offsets {}", committed, e);
+                }
+            });
+        }
+
+        int queued = inFlight.get();
+        if (queued >= maxInFlight) {
+            Set<TopicPartition> flowing = new HashSet<>(consumer.assignment());
+            flowing.removeAll(consumer.paused());
+            if (!flowing.isEmpty()) {
+                consumer.pause(flowing);
+                throttled.addAll(flowing);
+                pausesCounter.increment();
+            }
+        } else if (queued <= resumeBelow) {
+            Set<TopicPartition> ours = new HashSet<>(consumer.paused());
+            ours.retainAll(throttled);
+            if (!ours.isEmpty()) {
+                consumer.resume(ours);
+                throttled.removeAll(ours);
+            }
+        }
+    }
+
+    private void awaitCapacity() {
+        if (inFlight.get() < maxInFlight) {
+            return;
+        }
+        pausesCounter.increment();
+        synchronized (capacity) {
+            try {
+                while (running && inFlight.get() > resumeBelow) {
+                    capacity.wait(50);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runWorker() {
+        List<ChatQueue> taken = new ArrayList<>();
+        List<Pending> work = new ArrayList<>(maxBatch);
+        while (running || inFlight.get() > 0) {
+            try {
+                ChatQueue queue = ready.poll(100, TimeUnit.MILLISECONDS);
+                // fill the transaction with other ready chats; each chat gives at most what is left of max-batch
+                while (queue != null) {
+                    taken.add(queue);
+                    take(queue, work);
+                    queue = work.size() < maxBatch ? ready.poll() : null;
+                }
+                if (!work.isEmpty()) {
+                    process(work);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                finish(work);
+                for (ChatQueue chat : taken) {
+                    release(chat);
+                }
+                work.clear();
+                taken.clear();
+            }
+        }
+    }
+
+    private void take(ChatQueue queue, List<Pending> work) {
+        chats.computeIfPresent(queue.chatId, (chatId, current) -> {
+            while (work.size() < maxBatch && !current.pending.isEmpty()) {
+                work.add(current.pending.poll());
+            }
+            return current;
+        });
+    }
+
+    /** Drops a drained chat, or puts it back at the end of the ready queue behind the chats that were waiting. */
+    private void release(ChatQueue queue) {
+        chats.computeIfPresent(queue.chatId, (chatId, current) -> {
+            if (current.pending.isEmpty()) {
+                return null;
+            }
+            ready.add(current);
+            return current;
+        });
+    }
+
+    private void process(List<Pending> work) {
+        List<ConsumerRecord<String, byte[]>> accepted = new ArrayList<>(work.size());
+        List<ChatMessageEvent> events = new ArrayList<>(work.size());
+        for (Pending pending : work) {
+            accepted.add(pending.record());
+            events.add(pending.event());
+        }
+        try {
+            persistAndPublish(accepted, events);
+        } catch (Exception e) {
+            // per-record failures already went to the DLQ inside persistAndPublish; anything escaping is logged and skipped
+            log.error("Failed to process {} chat message events", work.size(), e);
+        }
+    }
+
+    private void finish(List<Pending> work) {
+        if (work.isEmpty()) {
+            return;
+        }
+        for (Pending pending : work) {
+            ConsumerRecord<String, byte[]> record = pending.record();
+            offsets.finished(new TopicPartition(record.topic(), record.partition()), record.offset());
+        }
+        int remaining = inFlight.addAndGet(-work.size());
+        if (remaining <= resumeBelow && remaining + work.size() > resumeBelow) {
+            synchronized (capacity) {
+                capacity.notifyAll();
+            }
+        }
     }
 
-    @KafkaListener(topics = "chat.messages", groupId = "chat-message-processor")
-    public void consume(String value) {
-        final String topic = "chat.messages";
+    private static Map<TopicPartition, OffsetAndMetadata> toOffsets(Map<TopicPartition, Long> positions) {
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>(positions.size() * 2);
+        positions.forEach((partition, offset) -> commits.put(partition, new OffsetAndMetadata(offset)));
+        return commits;
+    }
 
+    private void persistAndPublish(List<ConsumerRecord<String, byte[]>> accepted, List<ChatMessageEvent> events) {
+        List<Message> persisted;
+        List<Long> acceptedAtMillis;
+        long persistStart = System.nanoTime();
         try {
-            ChatMessageEvent event = objectMapper.readValue(value, ChatMessageEvent.class);
+            persisted = messageService.sendMessageBatch(events);
+            acceptedAtMillis = new ArrayList<>(events.size());
+            for (ChatMessageEvent event : events) {
+                acceptedAtMillis.add(event.timestampMillis());
+            }
+        } catch (Exception e) {
+            // One bad row (e.g. a concurrent duplicate clientMessageId) rolls back the whole batch,
+            // so fall back to per-record processing to isolate it and keep DLQ routing per record.
+            log.warn("Batch persist of {} chat message events failed, retrying record by record", events.size(), e);
+            persisted = new ArrayList<>(events.size());
+            acceptedAtMillis = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                Message msg = persistOne(accepted.get(i), events.get(i));
+                if (msg != null) {
+                    persisted.add(msg);
+                    acceptedAtMillis.add(events.get(i).timestampMillis());
+                }
+            }
+        }
+        latencyMetrics.record(Stage.DB_COMMIT, System.nanoTime() - persistStart);
+
+        advanceSeqs(persisted);
+        publishFanout(persisted, acceptedAtMillis);
+        updateInboxes(persisted);
+        messagesProcessedCounter.increment(persisted.size());
+    }
 
-            Message msg = messageService.sendMessage(
+    private Message persistOne(ConsumerRecord<String, byte[]> record, ChatMessageEvent event) {
+        try {
+            return messageService.sendMessage(
                     event.senderId(),
                     event.chatId(),
                     event.body(),
                     event.clientMessageId()
             );
+        } catch (Exception e) {
+            fail(record, e);
+            return null;
+        }
+    }
+
+    private void publishFanout(List<Message> persisted, List<Long> acceptedAtMillis) {
+        List<MessageStatusFanoutEvent> statusEvents = new ArrayList<>(persisted.size());
+        List<NewMessageFanoutEvent> messageEvents = new ArrayList<>(persisted.size());
+        long publishedAtMillis = System.currentTimeMillis();
 
-            MessageStatusFanoutEvent statusEvent = new MessageStatusFanoutEvent(
+        for (int i = 0; i < persisted.size(); i++) {
+            Message msg = persisted.get(i);
+            statusEvents.add(new MessageStatusFanoutEvent(
                     msg.getId(),
                     msg.getChat().getId(),
                     msg.getSender().getId(),
                     "DELIVERED"
-            );
-            wsFanoutPublisher.publishMessageStatus(statusEvent);
-
-            NewMessageFanoutEvent fanoutEvent = new NewMessageFanoutEvent(
+            ));
+            messageEvents.add(new NewMessageFanoutEvent(
                     msg.getId(),
                     msg.getChat().getId(),
                     msg.getSender().getId(),
                     msg.getBody(),
-                    msg.getCreatedAt().toString()
-            );
-            wsFanoutPublisher.publishNewMessage(fanoutEvent);
+                    msg.getCreatedAt().toString(),
+                    acceptedAtMillis.get(i),
+                    publishedAtMillis,
+                    msg.getSeq()
+            ));
+        }
 
+        long publishStart = System.nanoTime();
+        try {
+            wsFanoutPublisher.publishMessageBatch(statusEvents, messageEvents);
+            latencyMetrics.record(Stage.FANOUT_PUBLISH, System.nanoTime() - publishStart);
+        } catch (Exception e) {
+            // messages are committed at this point; clients recover them via history/unread sync
+            log.error("Failed to publish fan-out for {} persisted messages", persisted.size(), e);
+        }
+    }
 
-            messagesProcessedCounter.increment();
+    /**
+     * Runs before the publish so the cached chat seq that replay freshness checks read is never behind an event
+     * a node has already buffered.
+     */
+    private void advanceSeqs(List<Message> persisted) {
+        try {
+            inboxCache.onSeqsAssigned(persisted);
+        } catch (Exception e) {
+            // a lagging seq only makes a replay look fresh until the next message; clients resync on seq gaps
+            log.warn("Failed to advance cached chat seqs for {} persisted messages", persisted.size(), e);
+        }
+    }
 
+    private void updateInboxes(List<Message> persisted) {
+        try {
+            inboxCache.onMessagesPersisted(persisted);
         } catch (Exception e) {
-            log.error("Failed to process chat message event, payload={}", value, e);
-            messagesFailedCounter.increment();
-
-            dlqPublisher.sendToDlq(
-                    "chat.messages.dlq",
-                    topic,
-                    null,
-                    value,
-                    e.getMessage()
-            );
+            // the cache self-heals on its TTL; MySQL stays authoritative
+            log.warn("Failed to update inbox cache for {} persisted messages", persisted.size(), e);
+        }
+    }
+
+    private void fail(ConsumerRecord<String, byte[]> record, Exception e) {
+        log.error("Failed to process chat message event, payload={}", EventCodec.describe(record.value()), e);
+        messagesFailedCounter.increment();
+
+        dlqPublisher.sendToDlq(
+                DLQ_TOPIC,
+                TOPIC,
+                record.key(),
+                record.value(),
+                e.getMessage()
+        );
+    }
+
+    @Override
+    public void start() {
+        if (VirtualThreadConfig.isActive(environment)) {
+            SimpleAsyncTaskExecutor virtualExecutor = VirtualThreadConfig.virtualExecutor("chat-message-worker-");
+            virtualExecutor.setTaskTerminationTimeout(TimeUnit.SECONDS.toMillis(10));
+            workerExecutor = virtualExecutor;
+        } else {
+            workerExecutor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("chat-message-worker-"));
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerExecutor.execute(this::runWorker);
         }
     }
 
+    /**
+     * Lets the workers finish what was polled, for up to 10 seconds. Whatever is left is redelivered, because its
+     * offsets were never committed.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (workerExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (workerExecutor instanceof SimpleAsyncTaskExecutor asyncTaskExecutor) {
+            asyncTaskExecutor.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the Kafka containers and the in-memory transport that feed it.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private record Pending(ConsumerRecord<String, byte[]> record, ChatMessageEvent event) {
+    }
+
+    /** Queued records of one chat, oldest first; only touched inside {@link #chats} compute calls. */
+    private static final class ChatQueue {
+        private final long chatId;
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+        ChatQueue(long chatId) {
+            this.chatId = chatId;
+        }
+    }
 }
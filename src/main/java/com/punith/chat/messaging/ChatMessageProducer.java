@@ -1,47 +1,84 @@
 package com.punith.chat.messaging;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.EventTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Service
 public class ChatMessageProducer {
 
     private static final Logger log = LoggerFactory.getLogger(ChatMessageProducer.class);
     private static final String TOPIC = "chat.messages";
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport eventTransport;
+    private final EventCodec eventCodec;
+    private final MessageLatencyMetrics latencyMetrics;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter produceFailedCounter;
+
+    public ChatMessageProducer(EventTransport eventTransport,
+                               EventCodec eventCodec,
+                               MessageLatencyMetrics latencyMetrics,
+                               MeterRegistry meterRegistry) {
+        this.eventTransport = eventTransport;
+        this.eventCodec = eventCodec;
+        this.latencyMetrics = latencyMetrics;
+
+        Gauge.builder("chat_kafka_produce_in_flight", inFlight, AtomicInteger::get)
+                .description("chat.messages sends waiting for a broker ack")
+                .tag("topic", TOPIC)
+                .register(meterRegistry);
 
-    public ChatMessageProducer(KafkaTemplate<String, String> kafkaTemplate,
-                               ObjectMapper objectMapper) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        this.produceFailedCounter = Counter.builder("chat_kafka_produce_failed_total")
+                .description("chat.messages sends that the broker did not ack")
+                .tag("topic", TOPIC)
+                .register(meterRegistry);
     }
 
-    public void sendMessageEvent(ChatMessageEvent event) {
-        String key = event.chatId().toString();
-        String value;
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Sends a {@link ChatMessageEvent} keyed by chatId, so a chat's messages share a partition and stay ordered.
+     * The body is the UTF-8 slice of the inbound frame and is copied into the record as is.
+     * The returned future completes on the producer's I/O thread once the broker has acked
+     * (all in-sync replicas, idempotent producer) or the send has failed.
+     */
+    public CompletableFuture<EventTransport.Delivery> sendMessage(long chatId, long senderId,
+                                                                  byte[] body, int bodyOffset, int bodyLength,
+                                                                  String clientMessageId, long timestampMillis) {
+        String key = Long.toString(chatId);
+        byte[] value;
         try {
-            value = objectMapper.writeValueAsString(event);
-        } catch (JsonProcessingException e) {
+            value = eventCodec.encodeChatMessage(
+                    chatId, senderId, body, bodyOffset, bodyLength, clientMessageId, timestampMillis);
+        } catch (IOException e) {
             throw new RuntimeException("Failed to serialize ChatMessageEvent", e);
         }
 
-        ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, key, value);
-
-        kafkaTemplate.send(record).whenComplete((result, ex) -> {
+        long sentAt = System.nanoTime();
+        inFlight.incrementAndGet();
+        return eventTransport.send(TOPIC, key, value).whenComplete((result, ex) -> {
+            inFlight.decrementAndGet();
             if (ex != null) {
-                log.error("Failed to publish message event to Kafka", ex);
+                produceFailedCounter.increment();
+                log.error("Failed to publish message event", ex);
             } else {
-                log.debug("Published message event to Kafka, topic={}, partition={}, offset={}",
-                        result.getRecordMetadata().topic(),
-                        result.getRecordMetadata().partition(),
-                        result.getRecordMetadata().offset());
+                latencyMetrics.record(MessageLatencyMetrics.Stage.PRODUCE_ACK, System.nanoTime() - sentAt);
+                log.debug("Published message event, topic={}, partition={}, offset={}",
+                        result.topic(),
+                        result.partition(),
+                        result.offset());
             }
         });
     }
@@ -2,12 +2,12 @@ package com.punith.chat.messaging;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.EventTransport;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -19,14 +19,14 @@ public class DlqPublisher {
 
     private static final Logger log = LoggerFactory.getLogger(DlqPublisher.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final EventTransport eventTransport;
     private final ObjectMapper objectMapper;
     private final Counter dlqMessagesCounter;
 
-    public DlqPublisher(KafkaTemplate<String, String> kafkaTemplate,
+    public DlqPublisher(EventTransport eventTransport,
                         ObjectMapper objectMapper,
                         MeterRegistry meterRegistry) {
-        this.kafkaTemplate = kafkaTemplate;
+        this.eventTransport = eventTransport;
         this.objectMapper = objectMapper;
 
         this.dlqMessagesCounter = Counter.builder("chat_dlq_published_total")
@@ -37,35 +37,35 @@ public class DlqPublisher {
     public void sendToDlq(String dlqTopic,
                           String originalTopic,
                           String originalKey,
-                          String originalPayload,
+                          byte[] originalPayload,
                           String errorMessage) {
 
         Map<String, Object> wrapper = new HashMap<>();
         wrapper.put("originalTopic", originalTopic);
         wrapper.put("originalKey", originalKey);
-        wrapper.put("originalPayload", originalPayload);
+        wrapper.put("originalEncoding", EventCodec.encodingOf(originalPayload).name());
+        wrapper.put("originalPayload", EventCodec.describe(originalPayload));
         wrapper.put("errorMessage", errorMessage);
         wrapper.put("timestamp", Instant.now().toString());
 
-        String value;
+        // DLQ records stay JSON whatever chat.events.encoding says; they are read by people, not consumers
+        byte[] value;
         try {
-            value = objectMapper.writeValueAsString(wrapper);
+            value = objectMapper.writeValueAsBytes(wrapper);
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize DLQ payload for topic {}", dlqTopic, e);
             return;
         }
 
-        ProducerRecord<String, String> record = new ProducerRecord<>(dlqTopic, originalKey, value);
-
-        kafkaTemplate.send(record).whenComplete((result, ex) -> {
+        eventTransport.send(dlqTopic, originalKey, value).whenComplete((result, ex) -> {
             if (ex != null) {
                 log.error("Failed to publish message to DLQ topic {}", dlqTopic, ex);
             } else {
                 dlqMessagesCounter.increment();
                 log.warn("Sent message to DLQ topic={}, partition={}, offset={}",
-                        result.getRecordMetadata().topic(),
-                        result.getRecordMetadata().partition(),
-                        result.getRecordMetadata().offset());
+                        result.topic(),
+                        result.partition(),
+                        result.offset());
             }
         });
     }
@@ -0,0 +1,33 @@
+package com.punith.chat.messaging;
+
+/**
+ * Redis channel names for WebSocket fan-out. Chat events are addressed to the nodes that hold
+ * sessions for the chat's participants; membership changes are still broadcast to every node.
+ */
+public final class FanoutChannels {
+
+    public static final String MEMBERSHIP = "ws.fanout.membership";
+
+    private FanoutChannels() {
+    }
+
+    public static String newMessages(String nodeId) {
+        return "ws.fanout.messages." + nodeId;
+    }
+
+    public static String readReceipts(String nodeId) {
+        return "ws.fanout.read-receipts." + nodeId;
+    }
+
+    public static String messageStatus(String nodeId) {
+        return "ws.fanout.message-status." + nodeId;
+    }
+
+    public static String typing(String nodeId) {
+        return "ws.fanout.typing." + nodeId;
+    }
+
+    public static String presence(String nodeId) {
+        return "ws.fanout.presence." + nodeId;
+    }
+}
@@ -0,0 +1,106 @@
+package com.punith.chat.messaging;
+
+import com.punith.chat.service.ParticipantDirectory;
+import com.punith.chat.session.RedisSessionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the set of nodes a fan-out event has to reach, from chat membership and the
+ * user→node presence index kept by {@link RedisSessionService}. With the in-memory transport there is only
+ * this node, so every event is routed to it without a presence lookup.
+ */
+@Component
+public class FanoutRouter {
+
+    private final ParticipantDirectory participantDirectory;
+    private final RedisSessionService redisSessionService;
+    private final Set<String> localNodes;
+
+    public FanoutRouter(ParticipantDirectory participantDirectory,
+                        RedisSessionService redisSessionService,
+                        @Value("${chat.transport.mode:kafka}") String transportMode,
+                        @Value("${ws.node-id:node-1}") String nodeId) {
+        this.participantDirectory = participantDirectory;
+        this.redisSessionService = redisSessionService;
+        this.localNodes = "memory".equals(transportMode) ? Set.of(nodeId) : null;
+    }
+
+    public Set<String> nodesForChat(Long chatId) {
+        return nodesForChats(Set.of(chatId)).getOrDefault(chatId, Set.of());
+    }
+
+    public Set<String> nodesForUser(Long userId) {
+        if (localNodes != null) {
+            return localNodes;
+        }
+        return redisSessionService.findNodesForUsers(Set.of(userId)).getOrDefault(userId, Set.of());
+    }
+
+    /**
+     * Resolves target nodes for several chats with a single presence lookup over the union of their participants.
+     */
+    public Map<Long, Set<String>> nodesForChats(Collection<Long> chatIds) {
+        return resolve(chatIds).nodesByChat();
+    }
+
+    /**
+     * Like {@link #nodesForChats} but also exposes the per-user presence it looked up, so events
+     * addressed to a single participant (e.g. the sender) can be routed without another round trip.
+     */
+    public Routes resolve(Collection<Long> chatIds) {
+        if (localNodes != null) {
+            Map<Long, Set<String>> nodesByChat = new HashMap<>();
+            for (Long chatId : chatIds) {
+                nodesByChat.put(chatId, localNodes);
+            }
+            return new Routes(nodesByChat, Map.of(), localNodes);
+        }
+
+        Map<Long, long[]> participantsByChat = new HashMap<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Long chatId : chatIds) {
+            long[] participantIds = participantDirectory.getParticipantIds(chatId);
+            participantsByChat.put(chatId, participantIds);
+            for (long userId : participantIds) {
+                userIds.add(userId);
+            }
+        }
+
+        Map<Long, Set<String>> nodesByUser = redisSessionService.findNodesForUsers(userIds);
+
+        Map<Long, Set<String>> nodesByChat = new HashMap<>();
+        participantsByChat.forEach((chatId, participantIds) -> {
+            Set<String> nodes = new HashSet<>();
+            for (long userId : participantIds) {
+                Set<String> userNodes = nodesByUser.get(userId);
+                if (userNodes != null) {
+                    nodes.addAll(userNodes);
+                }
+            }
+            nodesByChat.put(chatId, nodes);
+        });
+        return new Routes(nodesByChat, nodesByUser, Set.of());
+    }
+
+    public record Routes(
+            Map<Long, Set<String>> nodesByChat,
+            Map<Long, Set<String>> nodesByUser,
+            Set<String> defaultNodes
+    ) {
+        public Set<String> chatNodes(Long chatId) {
+            return nodesByChat.getOrDefault(chatId, defaultNodes);
+        }
+
+        public Set<String> userNodes(Long userId) {
+            return nodesByUser.getOrDefault(userId, defaultNodes);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.punith.chat.messaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency of a chat message from WS ingress to the recipient's socket write, exported as
+ * {@code chat_message_stage_latency_seconds{stage,nodeId}} histograms.
+ * Stages measured against an earlier wall-clock stamp (consumer lag, fan-out receive, end to end) may span
+ * nodes and so include clock skew; negative values are clamped to zero.
+ */
+@Component
+public class MessageLatencyMetrics {
+
+    public enum Stage {
+        /** Kafka send() until the broker ack. */
+        PRODUCE_ACK("produce_ack"),
+        /** Record timestamp until the consumer picks it up. */
+        CONSUMER_LAG("consumer_lag"),
+        /** Persisting one consumed batch, commit included. */
+        DB_COMMIT("db_commit"),
+        /** Pipelined Redis publish of one batch's fan-out events. */
+        FANOUT_PUBLISH("fanout_publish"),
+        /** Redis publish until the subscriber on the recipient node handles the event. */
+        FANOUT_RECEIVE("fanout_receive"),
+        /** One WebSocket frame write. */
+        SOCKET_WRITE("socket_write"),
+        /** WS ingress on the sender's node until the frame is written to a recipient. */
+        END_TO_END("end_to_end");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Timer[] timers = new Timer[Stage.values().length];
+
+    public MessageLatencyMetrics(@Value("${ws.node-id:node-1}") String nodeId,
+                                 MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            timers[stage.ordinal()] = Timer.builder("chat_message_stage_latency")
+                    .description("Latency of each chat message delivery stage")
+                    .tag("stage", stage.tag)
+                    .tag("nodeId", nodeId)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(50_000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        timers[stage.ordinal()].record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time elapsed since an epoch-millis stamp taken earlier in the pipeline, possibly on another node.
+     * Unknown stamps ({@code null} or {@code 0}) are ignored.
+     */
+    public void recordSince(Stage stage, Long epochMillis) {
+        if (epochMillis == null || epochMillis <= 0) {
+            return;
+        }
+        timers[stage.ordinal()].record(Math.max(0, System.currentTimeMillis() - epochMillis), TimeUnit.MILLISECONDS);
+    }
+}
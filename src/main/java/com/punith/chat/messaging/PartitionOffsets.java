@@ -0,0 +1,77 @@
+package com.punith.chat.messaging;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Commit positions for records that finish out of order. A partition's position is its lowest offset still in
+ * flight, or one past the highest offset seen when nothing is, so committing it never skips an unfinished record.
+ */
+final class PartitionOffsets {
+
+    private final Map<TopicPartition, Progress> partitions = new HashMap<>();
+
+    /** A record was handed to a worker; it holds the partition's position until {@link #finished}. */
+    synchronized void started(TopicPartition partition, long offset) {
+        Progress progress = partitions.computeIfAbsent(partition, p -> new Progress());
+        progress.inFlight.add(offset);
+        progress.next = Math.max(progress.next, offset + 1);
+    }
+
+    /** A record was done with on arrival (e.g. rejected to the DLQ). */
+    synchronized void skipped(TopicPartition partition, long offset) {
+        Progress progress = partitions.computeIfAbsent(partition, p -> new Progress());
+        progress.next = Math.max(progress.next, offset + 1);
+    }
+
+    /** Unknown partitions (revoked while the record was in flight) are ignored. */
+    synchronized void finished(TopicPartition partition, long offset) {
+        Progress progress = partitions.get(partition);
+        if (progress != null) {
+            progress.inFlight.remove(offset);
+        }
+    }
+
+    /**
+     * The offset to commit per partition, for partitions whose position moved since it was last returned.
+     */
+    synchronized Map<TopicPartition, Long> committable() {
+        Map<TopicPartition, Long> moved = new HashMap<>();
+        partitions.forEach((partition, progress) -> {
+            long position = progress.position();
+            if (position > progress.committed) {
+                progress.committed = position;
+                moved.put(partition, position);
+            }
+        });
+        return moved;
+    }
+
+    /**
+     * Stops tracking revoked partitions and returns the offsets to commit for them before they move on.
+     */
+    synchronized Map<TopicPartition, Long> revoke(Collection<TopicPartition> revoked) {
+        Map<TopicPartition, Long> last = new HashMap<>();
+        for (TopicPartition partition : revoked) {
+            Progress progress = partitions.remove(partition);
+            if (progress != null && progress.position() > progress.committed) {
+                last.put(partition, progress.position());
+            }
+        }
+        return last;
+    }
+
+    private static final class Progress {
+        private final TreeSet<Long> inFlight = new TreeSet<>();
+        private long next;
+        private long committed = -1;
+
+        long position() {
+            return inFlight.isEmpty() ? next : inFlight.first();
+        }
+    }
+}
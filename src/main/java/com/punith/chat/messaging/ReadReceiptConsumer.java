@@ -1,8 +1,10 @@
 package com.punith.chat.messaging;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.TopicBatchListener;
 import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
 import com.punith.chat.service.MessageService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -11,27 +13,37 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 
 @Service
-public class ReadReceiptConsumer {
+public class ReadReceiptConsumer implements TopicBatchListener {
 
     private static final Logger log = LoggerFactory.getLogger(ReadReceiptConsumer.class);
+    private static final String TOPIC = "chat.read-receipts";
+    private static final String DLQ_TOPIC = "chat.read-receipts.dlq";
 
-    private final ObjectMapper objectMapper;
+    private final EventCodec eventCodec;
     private final MessageService messageService;
     private final WsFanoutPublisher wsFanoutPublisher;
     private final DlqPublisher dlqPublisher;
     private final Counter readProcessedCounter;
     private final Counter readFailedCounter;
+    private final Counter coalescedCounter;
+    private final Counter dbWritesCounter;
 
-    public ReadReceiptConsumer(ObjectMapper objectMapper,
+    public ReadReceiptConsumer(EventCodec eventCodec,
                                MessageService messageService,
                                WsFanoutPublisher wsFanoutPublisher,
                                DlqPublisher dlqPublisher,
                                MeterRegistry meterRegistry)  {
-        this.objectMapper = objectMapper;
+        this.eventCodec = eventCodec;
         this.messageService = messageService;
         this.wsFanoutPublisher = wsFanoutPublisher;
         this.dlqPublisher = dlqPublisher;
@@ -42,49 +54,146 @@ public class ReadReceiptConsumer {
         this.readFailedCounter = Counter.builder("chat_read_receipts_failed_total")
                 .description("Total read receipt events that failed processing")
                 .register(meterRegistry);
-    }
 
-    @KafkaListener(topics = "chat.read-receipts", groupId = "chat-read-processor")
-    public void consume(String value) {
-        final String topic = "chat.read-receipts";
+        this.coalescedCounter = Counter.builder("chat_read_receipts_coalesced_total")
+                .description("Read receipt events merged into another event for the same chat and user")
+                .register(meterRegistry);
 
-        try {
-            ReadReceiptEvent event = objectMapper.readValue(value, ReadReceiptEvent.class);
+        this.dbWritesCounter = Counter.builder("chat_read_receipt_writes_total")
+                .description("Read watermark write transactions issued for read receipt events")
+                .register(meterRegistry);
+    }
 
-            messageService.markMessagesAsRead(
-                    event.userId(),
-                    event.chatId(),
-                    event.messageIds()
-            );
+    @Override
+    public String topic() {
+        return TOPIC;
+    }
 
-            OffsetDateTime readAt = OffsetDateTime.ofInstant(
-                    Instant.ofEpochMilli(event.timestampMillis()),
-                    ZoneOffset.UTC
-            );
+    @Override
+    public void onBatch(List<ConsumerRecord<String, byte[]>> records) {
+        consume(records);
+    }
 
-            ReadReceiptFanoutEvent fanoutEvent = new ReadReceiptFanoutEvent(
-                    event.chatId(),
-                    event.userId(),
-                    event.messageIds(),
-                    readAt.toString()
-            );
+    /**
+     * Receipts are fetched in windows of {@code chat.read-receipts.coalesce-window-ms} (the broker holds the
+     * fetch until the window elapses or enough bytes arrive) and merged per (chat, user), so overlapping
+     * scroll-driven events become one watermark write and one fan-out event. The batch's offsets are only
+     * committed after the listener returns, i.e. after every merged write has landed or gone to the DLQ.
+     */
+    @KafkaListener(
+            topics = TOPIC,
+            groupId = "chat-read-processor",
+            batch = "true",
+            autoStartup = KAFKA_AUTO_STARTUP,
+            properties = {
+                    "fetch.max.wait.ms=${chat.read-receipts.coalesce-window-ms:50}",
+                    "fetch.min.bytes=${chat.read-receipts.coalesce-min-bytes:65536}"
+            }
+    )
+    public void consume(List<ConsumerRecord<String, byte[]>> records) {
+        Map<ReceiptKey, PendingReceipt> merged = new LinkedHashMap<>();
+
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                ReadReceiptEvent event = eventCodec.decode(record.value(), ReadReceiptEvent.class);
+                merged.computeIfAbsent(new ReceiptKey(event.chatId(), event.userId()), key -> new PendingReceipt())
+                        .add(record, event);
+            } catch (Exception e) {
+                fail(record, e);
+            }
+        }
 
-            wsFanoutPublisher.publishReadReceipt(fanoutEvent);
+        coalescedCounter.increment(records.size() - merged.size());
+
+        merged.forEach((key, pending) -> {
+            try {
+                apply(key, pending.messageIds(), pending.upToMessageId, pending.timestampMillis);
+                readProcessedCounter.increment(pending.records.size());
+            } catch (Exception e) {
+                // an invalid id in one event must not drop the others merged with it
+                log.warn("Merged read receipt for chat {} user {} failed, retrying {} events one by one",
+                        key.chatId(), key.userId(), pending.records.size(), e);
+                for (int i = 0; i < pending.records.size(); i++) {
+                    ReadReceiptEvent event = pending.events.get(i);
+                    try {
+                        apply(key, event.messageIds(), event.upToMessageId(), event.timestampMillis());
+                        readProcessedCounter.increment();
+                    } catch (Exception single) {
+                        fail(pending.records.get(i), single);
+                    }
+                }
+            }
+        });
+    }
 
+    private void apply(ReceiptKey key, List<Long> messageIds, Long upToMessageId, Long timestampMillis) {
+        Long lastReadMessageId = messageService.markMessagesAsRead(
+                key.userId(),
+                key.chatId(),
+                messageIds,
+                upToMessageId
+        );
+        dbWritesCounter.increment();
+
+        // producers always stamp receipts, but a missing timestamp must not send the receipt to the DLQ
+        OffsetDateTime readAt = OffsetDateTime.ofInstant(
+                Instant.ofEpochMilli(timestampMillis != null ? timestampMillis : System.currentTimeMillis()),
+                ZoneOffset.UTC
+        );
+
+        ReadReceiptFanoutEvent fanoutEvent = new ReadReceiptFanoutEvent(
+                key.chatId(),
+                key.userId(),
+                messageIds != null ? messageIds : List.of(),
+                lastReadMessageId,
+                readAt.toString()
+        );
+
+        wsFanoutPublisher.publishReadReceipt(fanoutEvent);
+    }
 
-            readProcessedCounter.increment();
+    private void fail(ConsumerRecord<String, byte[]> record, Exception e) {
+        log.error("Failed to process read receipt event, payload={}", EventCodec.describe(record.value()), e);
+        readFailedCounter.increment();
+
+        dlqPublisher.sendToDlq(
+                DLQ_TOPIC,
+                TOPIC,
+                record.key(),
+                record.value(),
+                e.getMessage()
+        );
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to process read receipt event, payload={}", value, e);
-            readFailedCounter.increment();
+    private record ReceiptKey(Long chatId, Long userId) {}
+
+    /**
+     * Union of the explicit ids and the highest range bound / timestamp seen for one (chat, user).
+     */
+    private static final class PendingReceipt {
+        private final List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        private final List<ReadReceiptEvent> events = new ArrayList<>();
+        private final Set<Long> messageIds = new LinkedHashSet<>();
+        private Long upToMessageId;
+        private Long timestampMillis;
+
+        void add(ConsumerRecord<String, byte[]> record, ReadReceiptEvent event) {
+            records.add(record);
+            events.add(event);
+            if (event.messageIds() != null) {
+                messageIds.addAll(event.messageIds());
+            }
+            if (event.upToMessageId() != null && (upToMessageId == null || event.upToMessageId() > upToMessageId)) {
+                upToMessageId = event.upToMessageId();
+            }
+            if (event.timestampMillis() != null
+                    && (timestampMillis == null || event.timestampMillis() > timestampMillis)) {
+                timestampMillis = event.timestampMillis();
+            }
+        }
 
-            dlqPublisher.sendToDlq(
-                    "chat.read-receipts.dlq",
-                    topic,
-                    null,
-                    value,
-                    e.getMessage()
-            );
+        List<Long> messageIds() {
+            return new ArrayList<>(messageIds);
         }
     }
 
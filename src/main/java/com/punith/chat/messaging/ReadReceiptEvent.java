@@ -6,5 +6,6 @@ public record ReadReceiptEvent(
         Long chatId,
         Long userId,
         List<Long> messageIds,
+        Long upToMessageId,
         Long timestampMillis
 ) {}
@@ -1,47 +1,61 @@
 package com.punith.chat.messaging;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.EventTransport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Service
 public class ReadReceiptProducer {
 
     private static final Logger log = LoggerFactory.getLogger(ReadReceiptProducer.class);
     private static final String TOPIC = "chat.read-receipts";
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport eventTransport;
+    private final EventCodec eventCodec;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ReadReceiptProducer(EventTransport eventTransport,
+                               EventCodec eventCodec,
+                               MeterRegistry meterRegistry) {
+        this.eventTransport = eventTransport;
+        this.eventCodec = eventCodec;
 
-    public ReadReceiptProducer(KafkaTemplate<String, String> kafkaTemplate,
-                               ObjectMapper objectMapper) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        Gauge.builder("chat_kafka_produce_in_flight", inFlight, AtomicInteger::get)
+                .description("chat.read-receipts sends waiting for a broker ack")
+                .tag("topic", TOPIC)
+                .register(meterRegistry);
+    }
+
+    public int inFlight() {
+        return inFlight.get();
     }
 
     public void send(ReadReceiptEvent event) {
         String key = event.chatId().toString();
-        String value;
+        byte[] value;
         try {
-            value = objectMapper.writeValueAsString(event);
-        } catch (JsonProcessingException e) {
+            value = eventCodec.encode(event);
+        } catch (IOException e) {
             throw new RuntimeException("Failed to serialize ReadReceiptEvent", e);
         }
 
-        ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, key, value);
-
-        kafkaTemplate.send(record).whenComplete((result, ex) -> {
+        inFlight.incrementAndGet();
+        eventTransport.send(TOPIC, key, value).whenComplete((result, ex) -> {
+            inFlight.decrementAndGet();
             if (ex != null) {
-                log.error("Failed to publish read receipt event to Kafka", ex);
+                log.error("Failed to publish read receipt event", ex);
             } else {
-                log.debug("Published read receipt event to Kafka, topic={}, partition={}, offset={}",
-                        result.getRecordMetadata().topic(),
-                        result.getRecordMetadata().partition(),
-                        result.getRecordMetadata().offset());
+                log.debug("Published read receipt event, topic={}, partition={}, offset={}",
+                        result.topic(),
+                        result.partition(),
+                        result.offset());
             }
         });
     }
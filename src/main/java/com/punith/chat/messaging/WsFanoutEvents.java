@@ -10,7 +10,10 @@ public class WsFanoutEvents {
             Long chatId,
             Long senderId,
             String body,
-            String createdAtIso
+            String createdAtIso,
+            Long acceptedAtMillis,
+            Long publishedAtMillis,
+            Long seq
     ) {}
 
 
@@ -18,6 +21,7 @@ public class WsFanoutEvents {
             Long chatId,
             Long readerId,
             List<Long> messageIds,
+            Long lastReadMessageId,
             String readAtIso
     ) {}
 
@@ -28,4 +32,31 @@ public class WsFanoutEvents {
             Long userId,
             String status
     ) {}
+
+
+    public record MembershipChangedFanoutEvent(
+            Long chatId
+    ) {}
+
+
+    /**
+     * Ephemeral: never persisted; receivers drop it after {@code expiresAtMillis}.
+     */
+    public record TypingFanoutEvent(
+            Long chatId,
+            Long userId,
+            Boolean typing,
+            Long expiresAtMillis
+    ) {}
+
+
+    /**
+     * Ephemeral: delivered to the participants of {@code chatIds}, the user's most recently active chats.
+     */
+    public record PresenceFanoutEvent(
+            Long userId,
+            String status,
+            Long lastSeenAtMillis,
+            List<Long> chatIds
+    ) {}
 }
@@ -1,50 +1,160 @@
 package com.punith.chat.messaging;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.transport.FanoutTransport;
 import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
 import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MembershipChangedFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.PresenceFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.TypingFanoutEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 public class WsFanoutPublisher {
 
     private static final Logger log = LoggerFactory.getLogger(WsFanoutPublisher.class);
 
-    private static final String CHANNEL_NEW_MESSAGE = "ws.fanout.messages";
-    private static final String CHANNEL_READ_RECEIPT = "ws.fanout.read-receipts";
-    private static final String CHANNEL_MESSAGE_STATUS = "ws.fanout.message-status";
-
-    private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final FanoutTransport fanoutTransport;
+    private final EventCodec eventCodec;
+    private final FanoutRouter fanoutRouter;
 
-    public WsFanoutPublisher(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
-        this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+    public WsFanoutPublisher(FanoutTransport fanoutTransport,
+                             EventCodec eventCodec,
+                             FanoutRouter fanoutRouter) {
+        this.fanoutTransport = fanoutTransport;
+        this.eventCodec = eventCodec;
+        this.fanoutRouter = fanoutRouter;
     }
 
     public void publishNewMessage(NewMessageFanoutEvent event) {
-        publish(CHANNEL_NEW_MESSAGE, event);
+        List<byte[][]> frames = new ArrayList<>();
+        addFrames(frames, fanoutRouter.nodesForChat(event.chatId()), FanoutChannels::newMessages, event);
+        publishFrames(frames);
     }
 
     public void publishReadReceipt(ReadReceiptFanoutEvent event) {
-        publish(CHANNEL_READ_RECEIPT, event);
+        List<byte[][]> frames = new ArrayList<>();
+        addFrames(frames, fanoutRouter.nodesForChat(event.chatId()), FanoutChannels::readReceipts, event);
+        publishFrames(frames);
     }
+
     public void publishMessageStatus(MessageStatusFanoutEvent event) {
-        publish(CHANNEL_MESSAGE_STATUS, event);
+        List<byte[][]> frames = new ArrayList<>();
+        addFrames(frames, fanoutRouter.nodesForUser(event.userId()), FanoutChannels::messageStatus, event);
+        publishFrames(frames);
+    }
+
+    public void publishMembershipChanged(MembershipChangedFanoutEvent event) {
+        byte[] payload;
+        try {
+            payload = eventCodec.encode(event);
+        } catch (IOException e) {
+            log.error("Failed to serialize fanout event for channel {}", FanoutChannels.MEMBERSHIP, e);
+            return;
+        }
+        byte[] channel = FanoutChannels.MEMBERSHIP.getBytes(StandardCharsets.UTF_8);
+        fanoutTransport.publish(List.<byte[][]>of(new byte[][]{channel, payload}));
     }
 
+    /**
+     * Publishes a flushed batch of typing signals with one presence lookup and one transport call.
+     */
+    public void publishTyping(List<TypingFanoutEvent> events) {
+        Set<Long> chatIds = new LinkedHashSet<>();
+        for (TypingFanoutEvent event : events) {
+            chatIds.add(event.chatId());
+        }
+        FanoutRouter.Routes routes = fanoutRouter.resolve(chatIds);
+
+        List<byte[][]> frames = new ArrayList<>(events.size());
+        for (TypingFanoutEvent event : events) {
+            addFrames(frames, routes.chatNodes(event.chatId()), FanoutChannels::typing, event);
+        }
+        publishFrames(frames);
+    }
 
-    private void publish(String channel, Object event) {
+    /**
+     * Publishes a flushed batch of presence changes, each to the nodes of its chats' participants.
+     */
+    public void publishPresence(List<PresenceFanoutEvent> events) {
+        Set<Long> chatIds = new LinkedHashSet<>();
+        for (PresenceFanoutEvent event : events) {
+            chatIds.addAll(event.chatIds());
+        }
+        FanoutRouter.Routes routes = fanoutRouter.resolve(chatIds);
+
+        List<byte[][]> frames = new ArrayList<>(events.size());
+        for (PresenceFanoutEvent event : events) {
+            Set<String> nodes = new LinkedHashSet<>();
+            for (Long chatId : event.chatIds()) {
+                nodes.addAll(routes.chatNodes(chatId));
+            }
+            addFrames(frames, nodes, FanoutChannels::presence, event);
+        }
+        publishFrames(frames);
+    }
+
+    /**
+     * Publishes a DELIVERED status and a NEW_MESSAGE event per persisted message, addressed only to the
+     * nodes holding sessions for the relevant users, in one transport call (one pipelined round trip on Redis).
+     */
+    public void publishMessageBatch(List<MessageStatusFanoutEvent> statusEvents,
+                                    List<NewMessageFanoutEvent> messageEvents) {
+        Set<Long> chatIds = new LinkedHashSet<>();
+        for (NewMessageFanoutEvent event : messageEvents) {
+            chatIds.add(event.chatId());
+        }
+        FanoutRouter.Routes routes = fanoutRouter.resolve(chatIds);
+
+        List<byte[][]> frames = new ArrayList<>(statusEvents.size() + messageEvents.size());
+        for (int i = 0; i < messageEvents.size(); i++) {
+            MessageStatusFanoutEvent statusEvent = statusEvents.get(i);
+            NewMessageFanoutEvent messageEvent = messageEvents.get(i);
+
+            // the sender is a participant, so its presence was resolved along with the chat's
+            addFrames(frames, routes.userNodes(statusEvent.userId()), FanoutChannels::messageStatus, statusEvent);
+            addFrames(frames, routes.chatNodes(messageEvent.chatId()), FanoutChannels::newMessages, messageEvent);
+        }
+        publishFrames(frames);
+    }
+
+    private void addFrames(List<byte[][]> frames,
+                           Set<String> nodeIds,
+                           Function<String, String> channelForNode,
+                           Object event) {
+        if (nodeIds.isEmpty()) {
+            return;
+        }
+        byte[] payload;
         try {
-            String json = objectMapper.writeValueAsString(event);
-            redisTemplate.convertAndSend(channel, json);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize fanout event for channel {}", channel, e);
+            payload = eventCodec.encode(event);
+        } catch (IOException e) {
+            log.error("Failed to serialize fanout event {}", event.getClass().getSimpleName(), e);
+            return;
+        }
+        for (String nodeId : nodeIds) {
+            frames.add(new byte[][]{
+                    channelForNode.apply(nodeId).getBytes(StandardCharsets.UTF_8),
+                    payload
+            });
+        }
+    }
+
+    private void publishFrames(List<byte[][]> frames) {
+        if (frames.isEmpty()) {
+            return;
         }
+        fanoutTransport.publish(frames);
     }
 }
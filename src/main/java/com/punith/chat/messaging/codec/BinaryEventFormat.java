@@ -0,0 +1,382 @@
+package com.punith.chat.messaging.codec;
+
+import com.punith.chat.messaging.ChatMessageEvent;
+import com.punith.chat.messaging.ReadReceiptEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MembershipChangedFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.PresenceFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.TypingFanoutEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact encoding of the Kafka and fan-out event records.
+ * <p>
+ * Layout: {@link #MAGIC}, {@link #VERSION}, a type tag, a presence bitmap with one bit per record component,
+ * then the non-null components in declaration order. Numbers are LEB128 varints, strings are length-prefixed
+ * UTF-8 and id lists are zigzag-encoded deltas. New components may only be appended to a record; readers
+ * skip trailing bytes they do not know, so that does not need a version bump. Anything else does.
+ */
+final class BinaryEventFormat {
+
+    /** Never the first byte of a JSON document, which is how readers tell the two encodings apart. */
+    static final byte MAGIC = (byte) 0xC7;
+    static final byte VERSION = 1;
+
+    private static final int CHAT_MESSAGE = 1;
+    private static final int READ_RECEIPT = 2;
+    private static final int NEW_MESSAGE_FANOUT = 3;
+    private static final int READ_RECEIPT_FANOUT = 4;
+    private static final int MESSAGE_STATUS_FANOUT = 5;
+    private static final int MEMBERSHIP_CHANGED_FANOUT = 6;
+    private static final int TYPING_FANOUT = 7;
+    private static final int PRESENCE_FANOUT = 8;
+
+    private BinaryEventFormat() {
+    }
+
+    static boolean isBinary(byte[] payload) {
+        return payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    static boolean supports(Class<?> type) {
+        return tagOf(type) != 0;
+    }
+
+    static byte[] encode(Object event) {
+        if (event instanceof ChatMessageEvent e) {
+            return new Writer(CHAT_MESSAGE)
+                    .presence(e.chatId(), e.senderId(), e.body(), e.clientMessageId(), e.timestampMillis())
+                    .writeLong(e.chatId())
+                    .writeLong(e.senderId())
+                    .writeString(e.body())
+                    .writeString(e.clientMessageId())
+                    .writeLong(e.timestampMillis())
+                    .toByteArray();
+        }
+        if (event instanceof ReadReceiptEvent e) {
+            return new Writer(READ_RECEIPT)
+                    .presence(e.chatId(), e.userId(), e.messageIds(), e.upToMessageId(), e.timestampMillis())
+                    .writeLong(e.chatId())
+                    .writeLong(e.userId())
+                    .writeIds(e.messageIds())
+                    .writeLong(e.upToMessageId())
+                    .writeLong(e.timestampMillis())
+                    .toByteArray();
+        }
+        if (event instanceof NewMessageFanoutEvent e) {
+            return new Writer(NEW_MESSAGE_FANOUT)
+                    .presence(e.messageId(), e.chatId(), e.senderId(), e.body(), e.createdAtIso(),
+                            e.acceptedAtMillis(), e.publishedAtMillis(), e.seq())
+                    .writeLong(e.messageId())
+                    .writeLong(e.chatId())
+                    .writeLong(e.senderId())
+                    .writeString(e.body())
+                    .writeString(e.createdAtIso())
+                    .writeLong(e.acceptedAtMillis())
+                    .writeLong(e.publishedAtMillis())
+                    .writeLong(e.seq())
+                    .toByteArray();
+        }
+        if (event instanceof ReadReceiptFanoutEvent e) {
+            return new Writer(READ_RECEIPT_FANOUT)
+                    .presence(e.chatId(), e.readerId(), e.messageIds(), e.lastReadMessageId(), e.readAtIso())
+                    .writeLong(e.chatId())
+                    .writeLong(e.readerId())
+                    .writeIds(e.messageIds())
+                    .writeLong(e.lastReadMessageId())
+                    .writeString(e.readAtIso())
+                    .toByteArray();
+        }
+        if (event instanceof MessageStatusFanoutEvent e) {
+            return new Writer(MESSAGE_STATUS_FANOUT)
+                    .presence(e.messageId(), e.chatId(), e.userId(), e.status())
+                    .writeLong(e.messageId())
+                    .writeLong(e.chatId())
+                    .writeLong(e.userId())
+                    .writeString(e.status())
+                    .toByteArray();
+        }
+        if (event instanceof MembershipChangedFanoutEvent e) {
+            return new Writer(MEMBERSHIP_CHANGED_FANOUT)
+                    .presence(e.chatId())
+                    .writeLong(e.chatId())
+                    .toByteArray();
+        }
+        if (event instanceof TypingFanoutEvent e) {
+            return new Writer(TYPING_FANOUT)
+                    .presence(e.chatId(), e.userId(), e.typing(), e.expiresAtMillis())
+                    .writeLong(e.chatId())
+                    .writeLong(e.userId())
+                    .writeBoolean(e.typing())
+                    .writeLong(e.expiresAtMillis())
+                    .toByteArray();
+        }
+        if (event instanceof PresenceFanoutEvent e) {
+            return new Writer(PRESENCE_FANOUT)
+                    .presence(e.userId(), e.status(), e.lastSeenAtMillis(), e.chatIds())
+                    .writeLong(e.userId())
+                    .writeString(e.status())
+                    .writeLong(e.lastSeenAtMillis())
+                    .writeIds(e.chatIds())
+                    .toByteArray();
+        }
+        throw new IllegalArgumentException("No binary encoding for " + event.getClass().getName());
+    }
+
+    /**
+     * Same bytes as {@link #encode} of the equivalent {@link ChatMessageEvent}, with the body taken as UTF-8
+     * bytes instead of a String.
+     */
+    static byte[] encodeChatMessage(long chatId, long senderId, byte[] body, int bodyOffset, int bodyLength,
+                                    String clientMessageId, long timestampMillis) {
+        return new Writer(CHAT_MESSAGE)
+                .presence(chatId, senderId, body, clientMessageId, timestampMillis)
+                .writeLong(chatId)
+                .writeLong(senderId)
+                .writeUtf8(body, bodyOffset, bodyLength)
+                .writeString(clientMessageId)
+                .writeLong(timestampMillis)
+                .toByteArray();
+    }
+
+    static <T> T decode(byte[] payload, Class<T> type) {
+        Reader r = new Reader(payload);
+        int tag = r.readTag();
+        if (tag != tagOf(type)) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName() + " but payload has type tag " + tag);
+        }
+
+        Object event = switch (tag) {
+            case CHAT_MESSAGE -> new ChatMessageEvent(
+                    r.readLong(0), r.readLong(1), r.readString(2), r.readString(3), r.readLong(4));
+            case READ_RECEIPT -> new ReadReceiptEvent(
+                    r.readLong(0), r.readLong(1), r.readIds(2), r.readLong(3), r.readLong(4));
+            case NEW_MESSAGE_FANOUT -> new NewMessageFanoutEvent(
+                    r.readLong(0), r.readLong(1), r.readLong(2), r.readString(3), r.readString(4),
+                    r.readLong(5), r.readLong(6), r.readLong(7));
+            case READ_RECEIPT_FANOUT -> new ReadReceiptFanoutEvent(
+                    r.readLong(0), r.readLong(1), r.readIds(2), r.readLong(3), r.readString(4));
+            case MESSAGE_STATUS_FANOUT -> new MessageStatusFanoutEvent(
+                    r.readLong(0), r.readLong(1), r.readLong(2), r.readString(3));
+            case MEMBERSHIP_CHANGED_FANOUT -> new MembershipChangedFanoutEvent(r.readLong(0));
+            case TYPING_FANOUT -> new TypingFanoutEvent(
+                    r.readLong(0), r.readLong(1), r.readBoolean(2), r.readLong(3));
+            case PRESENCE_FANOUT -> new PresenceFanoutEvent(
+                    r.readLong(0), r.readString(1), r.readLong(2), r.readIds(3));
+            default -> throw new IllegalStateException("Unhandled type tag " + tag);
+        };
+        return type.cast(event);
+    }
+
+    private static int tagOf(Class<?> type) {
+        if (type == ChatMessageEvent.class) {
+            return CHAT_MESSAGE;
+        }
+        if (type == ReadReceiptEvent.class) {
+            return READ_RECEIPT;
+        }
+        if (type == NewMessageFanoutEvent.class) {
+            return NEW_MESSAGE_FANOUT;
+        }
+        if (type == ReadReceiptFanoutEvent.class) {
+            return READ_RECEIPT_FANOUT;
+        }
+        if (type == MessageStatusFanoutEvent.class) {
+            return MESSAGE_STATUS_FANOUT;
+        }
+        if (type == MembershipChangedFanoutEvent.class) {
+            return MEMBERSHIP_CHANGED_FANOUT;
+        }
+        if (type == TypingFanoutEvent.class) {
+            return TYPING_FANOUT;
+        }
+        if (type == PresenceFanoutEvent.class) {
+            return PRESENCE_FANOUT;
+        }
+        return 0;
+    }
+
+    private static final class Writer {
+
+        private byte[] buf = new byte[64];
+        private int pos;
+
+        Writer(int tag) {
+            writeByte(MAGIC);
+            writeByte(VERSION);
+            writeVarLong(tag);
+        }
+
+        Writer presence(Object... components) {
+            long mask = 0;
+            for (int i = 0; i < components.length; i++) {
+                if (components[i] != null) {
+                    mask |= 1L << i;
+                }
+            }
+            writeVarLong(mask);
+            return this;
+        }
+
+        Writer writeLong(Long value) {
+            if (value != null) {
+                writeVarLong(value);
+            }
+            return this;
+        }
+
+        Writer writeBoolean(Boolean value) {
+            if (value != null) {
+                writeVarLong(value ? 1 : 0);
+            }
+            return this;
+        }
+
+        Writer writeString(String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeUtf8(bytes, 0, bytes.length);
+            }
+            return this;
+        }
+
+        Writer writeUtf8(byte[] bytes, int offset, int length) {
+            writeVarLong(length);
+            ensure(length);
+            System.arraycopy(bytes, offset, buf, pos, length);
+            pos += length;
+            return this;
+        }
+
+        Writer writeIds(List<Long> ids) {
+            if (ids != null) {
+                writeVarLong(ids.size());
+                long previous = 0;
+                for (Long id : ids) {
+                    long delta = id - previous;
+                    writeVarLong((delta << 1) ^ (delta >> 63));
+                    previous = id;
+                }
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeByte(byte value) {
+            ensure(1);
+            buf[pos++] = value;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buf;
+        private int pos;
+        private long presence;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readTag() {
+            if (readByte() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary event payload");
+            }
+            byte version = readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary event version " + version);
+            }
+            int tag = (int) readVarLong();
+            presence = readVarLong();
+            return tag;
+        }
+
+        Long readLong(int component) {
+            return present(component) ? readVarLong() : null;
+        }
+
+        Boolean readBoolean(int component) {
+            return present(component) ? readVarLong() != 0 : null;
+        }
+
+        String readString(int component) {
+            if (!present(component)) {
+                return null;
+            }
+            int length = readLength();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        List<Long> readIds(int component) {
+            if (!present(component)) {
+                return null;
+            }
+            int size = readLength();
+            List<Long> ids = new ArrayList<>(size);
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                long zigzag = readVarLong();
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                ids.add(previous);
+            }
+            return ids;
+        }
+
+        private boolean present(int component) {
+            return (presence & (1L << component)) != 0;
+        }
+
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > buf.length - pos) {
+                throw new IllegalArgumentException("Truncated binary event payload");
+            }
+            return (int) length;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in binary event payload");
+        }
+
+        private byte readByte() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Truncated binary event payload");
+            }
+            return buf[pos++];
+        }
+    }
+}
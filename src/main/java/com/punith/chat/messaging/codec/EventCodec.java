@@ -0,0 +1,89 @@
+package com.punith.chat.messaging.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes Kafka events and Redis fan-out payloads as {@code chat.events.encoding} says, and decodes either
+ * encoding regardless of that setting. Roll out binary by deploying every node with {@code JSON} first,
+ * then switching producers over; switch back the same way.
+ */
+@Component
+public class EventCodec {
+
+    private final ObjectMapper objectMapper;
+    private final EventEncoding encoding;
+
+    public EventCodec(ObjectMapper objectMapper,
+                      @Value("${chat.events.encoding:JSON}") EventEncoding encoding) {
+        this.objectMapper = objectMapper;
+        this.encoding = encoding;
+    }
+
+    public EventEncoding encoding() {
+        return encoding;
+    }
+
+    public byte[] encode(Object event) throws IOException {
+        if (encoding == EventEncoding.BINARY && BinaryEventFormat.supports(event.getClass())) {
+            return BinaryEventFormat.encode(event);
+        }
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    /**
+     * Encodes a {@link com.punith.chat.messaging.ChatMessageEvent} whose body is already UTF-8, e.g. a slice of
+     * the inbound WebSocket frame, without turning it into a String first. Decodes like any other
+     * ChatMessageEvent.
+     */
+    public byte[] encodeChatMessage(long chatId, long senderId, byte[] body, int bodyOffset, int bodyLength,
+                                    String clientMessageId, long timestampMillis) throws IOException {
+        if (encoding == EventEncoding.BINARY) {
+            return BinaryEventFormat.encodeChatMessage(
+                    chatId, senderId, body, bodyOffset, bodyLength, clientMessageId, timestampMillis);
+        }
+
+        ByteArrayBuilder out = new ByteArrayBuilder(bodyLength + 128);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("chatId", chatId);
+            generator.writeNumberField("senderId", senderId);
+            generator.writeFieldName("body");
+            generator.writeUTF8String(body, bodyOffset, bodyLength);
+            generator.writeStringField("clientMessageId", clientMessageId);
+            generator.writeNumberField("timestampMillis", timestampMillis);
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        if (BinaryEventFormat.isBinary(payload)) {
+            return BinaryEventFormat.decode(payload, type);
+        }
+        return objectMapper.readValue(payload, type);
+    }
+
+    public static EventEncoding encodingOf(byte[] payload) {
+        return payload != null && BinaryEventFormat.isBinary(payload) ? EventEncoding.BINARY : EventEncoding.JSON;
+    }
+
+    /**
+     * Printable form of a payload for logs and DLQ records: JSON as-is, binary as base64.
+     */
+    public static String describe(byte[] payload) {
+        if (payload == null) {
+            return null;
+        }
+        return encodingOf(payload) == EventEncoding.BINARY
+                ? Base64.getEncoder().encodeToString(payload)
+                : new String(payload, StandardCharsets.UTF_8);
+    }
+}
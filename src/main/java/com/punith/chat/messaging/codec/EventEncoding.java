@@ -0,0 +1,10 @@
+package com.punith.chat.messaging.codec;
+
+/**
+ * Wire encoding used when producing Kafka events and Redis fan-out payloads.
+ * Consumers always accept both, so nodes can be switched one at a time.
+ */
+public enum EventEncoding {
+    JSON,
+    BINARY
+}
@@ -0,0 +1,19 @@
+package com.punith.chat.messaging.transport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Producer side of the event pipeline ({@code chat.messages}, {@code chat.read-receipts} and the DLQ topics).
+ * {@code chat.transport.mode} picks Kafka ({@link KafkaEventTransport}, default) or the in-process
+ * {@link InMemoryEventTransport}.
+ */
+public interface EventTransport {
+
+    /**
+     * Completes once the transport has durably accepted the record (broker ack for Kafka, enqueue for memory),
+     * or exceptionally if it could not.
+     */
+    CompletableFuture<Delivery> send(String topic, String key, byte[] value);
+
+    record Delivery(String topic, int partition, long offset) {}
+}
@@ -0,0 +1,12 @@
+package com.punith.chat.messaging.transport;
+
+import java.util.List;
+
+/**
+ * Delivery of encoded fan-out frames to the nodes' {@code WsFanoutSubscriber}s.
+ * Each frame is a {@code {channel, payload}} pair; see {@code FanoutChannels}.
+ */
+public interface FanoutTransport {
+
+    void publish(List<byte[][]> frames);
+}
@@ -0,0 +1,191 @@
+package com.punith.chat.messaging.transport;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-process stand-in for Kafka. Each topic is split into {@code chat.transport.memory.partitions}
+ * bounded ring buffers ({@link ArrayBlockingQueue}); records are assigned by key hash like Kafka's
+ * partitioner, so per-chat ordering holds. One thread per partition drains up to {@code max-batch} records at
+ * a time into the topic's {@link TopicBatchListener}. A full partition fails the send, which callers see
+ * the same way as a broker timeout. Nothing survives a restart, so this is for single-node and load-test
+ * deployments only.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.transport.mode", havingValue = "memory")
+public class InMemoryEventTransport implements EventTransport, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryEventTransport.class);
+
+    private final ObjectProvider<TopicBatchListener> listeners;
+    private final MeterRegistry meterRegistry;
+    private final int partitions;
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public InMemoryEventTransport(ObjectProvider<TopicBatchListener> listeners,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.transport.memory.partitions:1}") int partitions,
+                                  @Value("${chat.transport.memory.queue-capacity:65536}") int queueCapacity,
+                                  @Value("${chat.transport.memory.max-batch:500}") int maxBatch) {
+        this.listeners = listeners;
+        this.meterRegistry = meterRegistry;
+        this.partitions = Math.max(1, partitions);
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = maxBatch;
+    }
+
+    @Override
+    public CompletableFuture<Delivery> send(String topic, String key, byte[] value) {
+        Topic target = topics.computeIfAbsent(topic, this::newTopic);
+        if (running && !target.consumed) {
+            return CompletableFuture.completedFuture(new Delivery(topic, 0, -1L));
+        }
+        int partition = key == null ? 0 : Math.floorMod(key.hashCode(), partitions);
+        Partition queue = target.partitions[partition];
+
+        long offset = queue.nextOffset.getAndIncrement();
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(
+                topic, partition, offset, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                key == null ? -1 : key.getBytes(StandardCharsets.UTF_8).length, value.length,
+                key, value, new RecordHeaders(), Optional.empty());
+
+        if (!queue.records.offer(record)) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("In-memory queue for " + topic + "-" + partition + " is full"));
+        }
+        return CompletableFuture.completedFuture(new Delivery(topic, partition, offset));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (TopicBatchListener listener : listeners) {
+            Topic topic = topics.computeIfAbsent(listener.topic(), this::newTopic);
+            topic.consumed = true;
+            for (Partition partition : topic.partitions) {
+                Thread thread = new Thread(() -> drain(partition, listener),
+                        "memory-transport-" + listener.topic() + "-" + partition.index);
+                thread.setDaemon(true);
+                partition.consumer = thread;
+                thread.start();
+            }
+        }
+        // topics nobody consumes (the DLQs) are not retained
+        for (Topic topic : topics.values()) {
+            if (!topic.consumed) {
+                log.info("No in-memory consumer for topic {}, records sent to it are discarded", topic.name);
+                for (Partition partition : topic.partitions) {
+                    partition.records.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Topic topic : topics.values()) {
+            for (Partition partition : topic.partitions) {
+                if (partition.consumer != null) {
+                    try {
+                        partition.consumer.join(TimeUnit.SECONDS.toMillis(5));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain(Partition partition, TopicBatchListener listener) {
+        List<ConsumerRecord<String, byte[]>> batch = new ArrayList<>(maxBatch);
+        // keep going after stop() until what was accepted before it has been handed over
+        while (running || !partition.records.isEmpty()) {
+            try {
+                ConsumerRecord<String, byte[]> first = partition.records.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                partition.records.drainTo(batch, maxBatch - 1);
+                listener.onBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // listeners route their own failures to the DLQ; anything escaping is logged and skipped
+                log.error("In-memory consumer for {} failed on a batch of {}", listener.topic(), batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private Topic newTopic(String name) {
+        Partition[] queues = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            Partition partition = new Partition(i, new ArrayBlockingQueue<>(queueCapacity));
+            queues[i] = partition;
+            Gauge.builder("chat_transport_memory_queue_depth", partition.records, ArrayBlockingQueue::size)
+                    .description("Records waiting in an in-memory transport partition")
+                    .tag("topic", name)
+                    .tag("partition", Integer.toString(i))
+                    .register(meterRegistry);
+        }
+        return new Topic(name, queues);
+    }
+
+    private static final class Topic {
+        private final String name;
+        private final Partition[] partitions;
+        private volatile boolean consumed;
+
+        Topic(String name, Partition[] partitions) {
+            this.name = name;
+            this.partitions = partitions;
+        }
+    }
+
+    private static final class Partition {
+        private final int index;
+        private final ArrayBlockingQueue<ConsumerRecord<String, byte[]>> records;
+        private final AtomicLong nextOffset = new AtomicLong();
+        private volatile Thread consumer;
+
+        Partition(int index, ArrayBlockingQueue<ConsumerRecord<String, byte[]>> records) {
+            this.index = index;
+            this.records = records;
+        }
+    }
+}
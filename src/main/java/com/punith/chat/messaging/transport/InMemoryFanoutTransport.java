@@ -0,0 +1,33 @@
+package com.punith.chat.messaging.transport;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hands frames straight to this node's fan-out subscriber on the publishing thread.
+ * The subscriber only enqueues onto per-session send queues, so this does not block on sockets.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.transport.mode", havingValue = "memory")
+public class InMemoryFanoutTransport implements FanoutTransport {
+
+    // lazy: the subscriber depends on the WS handler, which (through ChatService) depends on the publisher
+    private final ObjectProvider<MessageListener> subscriber;
+
+    public InMemoryFanoutTransport(ObjectProvider<MessageListener> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void publish(List<byte[][]> frames) {
+        MessageListener listener = subscriber.getObject();
+        for (byte[][] frame : frames) {
+            listener.onMessage(new DefaultMessage(frame[0], frame[1]), null);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.punith.chat.messaging.transport;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+@Component
+@ConditionalOnProperty(name = "chat.transport.mode", havingValue = "kafka", matchIfMissing = true)
+public class KafkaEventTransport implements EventTransport {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    public KafkaEventTransport(KafkaTemplate<String, byte[]> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public CompletableFuture<Delivery> send(String topic, String key, byte[] value) {
+        return kafkaTemplate.send(new ProducerRecord<>(topic, key, value))
+                .thenApply(result -> new Delivery(
+                        result.getRecordMetadata().topic(),
+                        result.getRecordMetadata().partition(),
+                        result.getRecordMetadata().offset()));
+    }
+}
@@ -0,0 +1,36 @@
+package com.punith.chat.messaging.transport;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Redis pub/sub, with all frames of one call published in a single pipelined round trip.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.transport.mode", havingValue = "kafka", matchIfMissing = true)
+public class RedisFanoutTransport implements FanoutTransport {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisFanoutTransport(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void publish(List<byte[][]> frames) {
+        if (frames.isEmpty()) {
+            return;
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] frame : frames) {
+                connection.publish(frame[0], frame[1]);
+            }
+            return null;
+        });
+    }
+}
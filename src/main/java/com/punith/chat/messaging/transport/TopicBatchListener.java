@@ -0,0 +1,19 @@
+package com.punith.chat.messaging.transport;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.List;
+
+/**
+ * A consumer of one topic. Under Kafka the implementation's {@code @KafkaListener} does the polling;
+ * the in-memory transport calls {@link #onBatch} directly with records it builds itself.
+ */
+public interface TopicBatchListener {
+
+    /** {@code @KafkaListener(autoStartup)} value that keeps the Kafka container down in memory mode. */
+    String KAFKA_AUTO_STARTUP = "#{'${chat.transport.mode:kafka}' == 'kafka'}";
+
+    String topic();
+
+    void onBatch(List<ConsumerRecord<String, byte[]>> records);
+}
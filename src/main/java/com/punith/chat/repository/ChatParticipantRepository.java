@@ -4,8 +4,12 @@ import com.punith.chat.domain.chat.ChatParticipant;
 import com.punith.chat.domain.chat.Chat;
 import com.punith.chat.domain.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ChatParticipantRepository extends JpaRepository<ChatParticipant, Long> {
 
@@ -14,4 +18,27 @@ public interface ChatParticipantRepository extends JpaRepository<ChatParticipant
     List<ChatParticipant> findByChat(Chat chat);
 
     List<ChatParticipant> findByChatId(Long chatId);
+
+    @Query("select cp.user.id from ChatParticipant cp where cp.chat.id = :chatId")
+    List<Long> findUserIdsByChatId(@Param("chatId") Long chatId);
+
+    @Query("""
+       select cp.lastReadMessageId
+       from ChatParticipant cp
+       where cp.chat.id = :chatId
+         and cp.user.id = :userId
+       """)
+    Optional<Long> findLastReadMessageId(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("""
+       update ChatParticipant cp
+       set cp.lastReadMessageId = :messageId
+       where cp.chat.id = :chatId
+         and cp.user.id = :userId
+         and (cp.lastReadMessageId is null or cp.lastReadMessageId < :messageId)
+       """)
+    int advanceReadWatermark(@Param("chatId") Long chatId,
+                             @Param("userId") Long userId,
+                             @Param("messageId") Long messageId);
 }
@@ -1,7 +1,74 @@
 package com.punith.chat.repository;
 
 import com.punith.chat.domain.chat.Chat;
+import com.punith.chat.domain.chat.ChatSummaryView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface ChatRepository extends JpaRepository<Chat, Long> {
+
+    @Modifying
+    @Query("""
+       update Chat c
+       set c.lastMessageId = :messageId,
+           c.lastMessageSenderId = :senderId,
+           c.lastMessageBody = :bodyPreview,
+           c.lastMessageAt = :createdAt,
+           c.lastActivityAt = :createdAt
+       where c.id = :chatId
+         and (c.lastMessageId is null or c.lastMessageId < :messageId)
+       """)
+    int updateLastMessage(@Param("chatId") Long chatId,
+                          @Param("messageId") Long messageId,
+                          @Param("senderId") Long senderId,
+                          @Param("bodyPreview") String bodyPreview,
+                          @Param("createdAt") OffsetDateTime createdAt);
+
+    @Query("""
+       select c.id
+       from ChatParticipant cp join cp.chat c
+       where cp.user.id = :userId
+       order by c.lastActivityAt desc, c.id desc
+       """)
+    List<Long> findRecentChatIds(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select c.lastSeq from Chat c where c.id = :chatId")
+    Optional<Long> findLastSeq(@Param("chatId") Long chatId);
+
+    @Query("""
+       select new com.punith.chat.domain.chat.ChatSummaryView(
+           c.id, c.title, c.group, c.lastMessageBody, c.lastMessageSenderId, c.lastMessageAt, c.lastActivityAt,
+           (select count(m) from Message m
+            where m.chat.id = c.id
+              and m.id > coalesce(cp.lastReadMessageId, 0L)
+              and m.sender.id <> :userId))
+       from ChatParticipant cp join cp.chat c
+       where cp.user.id = :userId
+       order by c.lastActivityAt desc, c.id desc
+       """)
+    List<ChatSummaryView> findSummaries(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("""
+       select new com.punith.chat.domain.chat.ChatSummaryView(
+           c.id, c.title, c.group, c.lastMessageBody, c.lastMessageSenderId, c.lastMessageAt, c.lastActivityAt,
+           (select count(m) from Message m
+            where m.chat.id = c.id
+              and m.id > coalesce(cp.lastReadMessageId, 0L)
+              and m.sender.id <> :userId))
+       from ChatParticipant cp join cp.chat c
+       where cp.user.id = :userId
+         and (c.lastActivityAt < :activityAt or (c.lastActivityAt = :activityAt and c.id < :chatId))
+       order by c.lastActivityAt desc, c.id desc
+       """)
+    List<ChatSummaryView> findSummariesBefore(@Param("userId") Long userId,
+                                              @Param("activityAt") OffsetDateTime activityAt,
+                                              @Param("chatId") Long chatId,
+                                              Pageable pageable);
 }
@@ -0,0 +1,170 @@
+package com.punith.chat.repository;
+
+import com.punith.chat.domain.message.Message;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDBC batch writes for the consumer hot path. Hibernate cannot batch inserts for IDENTITY ids,
+ * so these go straight through JdbcTemplate and rely on rewriteBatchedStatements for multi-row INSERTs.
+ */
+@Repository
+public class MessageBulkRepository {
+
+    private static final String INSERT_MESSAGE = """
+            insert into messages (chat_id, sender_id, body, created_at, client_msg_id, seq)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+    // LAST_INSERT_ID(expr) hands the new value back on this connection without a second read of the row
+    private static final String ALLOCATE_SEQS = """
+            update chats set last_seq = last_insert_id(last_seq + ?) where id = ?
+            """;
+
+    private static final String INSERT_RECEIPT = """
+            insert into message_receipts (message_id, user_id, delivery_ts)
+            values (?, ?, ?)
+            """;
+
+    private static final int RECEIPT_BATCH_SIZE = 1000;
+
+    // %s is the id-list predicate; receipts are created if missing and read_ts is never overwritten
+    private static final String UPSERT_READ_RECEIPTS = """
+            insert into message_receipts (message_id, user_id, read_ts)
+            select m.id, ?, ?
+            from messages m
+            where m.chat_id = ?
+              and (%s (m.id > ? and m.id <= ?))
+            on duplicate key update read_ts = coalesce(message_receipts.read_ts, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts all messages in one batch and assigns the generated ids back onto them, in order.
+     */
+    public void insertMessages(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_MESSAGE, Statement.RETURN_GENERATED_KEYS)) {
+                for (Message m : messages) {
+                    ps.setLong(1, m.getChat().getId());
+                    ps.setLong(2, m.getSender().getId());
+                    ps.setString(3, m.getBody());
+                    ps.setTimestamp(4, Timestamp.from(m.getCreatedAt().toInstant()));
+                    if (m.getClientMessageId() != null) {
+                        ps.setString(5, m.getClientMessageId());
+                    } else {
+                        ps.setNull(5, Types.VARCHAR);
+                    }
+                    ps.setLong(6, m.getSeq());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < messages.size()) {
+                        messages.get(i++).setId(keys.getLong(1));
+                    }
+                    if (i != messages.size()) {
+                        throw new IllegalStateException(
+                                "Expected " + messages.size() + " generated message ids but got " + i);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reserves {@code count} consecutive seqs in the chat and returns the first one. It is one increment of
+     * {@code chats.last_seq} per chat and batch, not per message. The row lock it takes is the one
+     * {@code updateLastMessage} takes in the same transaction anyway. Seqs from a rolled-back transaction are
+     * rolled back with it, so they stay gapless.
+     */
+    public long allocateSeqs(long chatId, int count) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(ALLOCATE_SEQS)) {
+                ps.setInt(1, count);
+                ps.setLong(2, chatId);
+                if (ps.executeUpdate() != 1) {
+                    throw new IllegalArgumentException("Chat not found: " + chatId);
+                }
+            }
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("select last_insert_id()")) {
+                rs.next();
+                return rs.getLong(1) - count + 1;
+            }
+        });
+    }
+
+    /**
+     * Writes one delivery receipt per (message, participant) pair.
+     */
+    public void insertReceipts(List<Message> messages, List<long[]> participantIdsPerMessage, OffsetDateTime deliveredAt) {
+        List<long[]> rows = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            long messageId = messages.get(i).getId();
+            for (long userId : participantIdsPerMessage.get(i)) {
+                rows.add(new long[]{messageId, userId});
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Timestamp deliveryTs = Timestamp.from(deliveredAt.toInstant());
+        jdbcTemplate.batchUpdate(INSERT_RECEIPT, rows, RECEIPT_BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row[0]);
+            ps.setLong(2, row[1]);
+            ps.setTimestamp(3, deliveryTs);
+        });
+    }
+
+    /**
+     * Sets read_ts for the user on the given messages of the chat plus every message in
+     * (rangeAfterMessageId, rangeUpToMessageId], in one statement.
+     */
+    public int markReceiptsRead(Long chatId,
+                                Long userId,
+                                Collection<Long> messageIds,
+                                long rangeAfterMessageId,
+                                long rangeUpToMessageId,
+                                OffsetDateTime readAt) {
+        String idPredicate = messageIds.isEmpty()
+                ? ""
+                : "m.id in (" + String.join(",", Collections.nCopies(messageIds.size(), "?")) + ") or";
+        Timestamp readTs = Timestamp.from(readAt.toInstant());
+
+        List<Object> args = new ArrayList<>(messageIds.size() + 6);
+        args.add(userId);
+        args.add(readTs);
+        args.add(chatId);
+        args.addAll(messageIds);
+        args.add(rangeAfterMessageId);
+        args.add(rangeUpToMessageId);
+        args.add(readTs);
+        return jdbcTemplate.update(UPSERT_READ_RECEIPTS.formatted(idPredicate), args.toArray());
+    }
+}
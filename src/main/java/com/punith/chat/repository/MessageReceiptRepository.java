@@ -4,12 +4,6 @@ import com.punith.chat.domain.message.MessageReceipt;
 import com.punith.chat.domain.message.Message;
 import com.punith.chat.domain.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
-import com.punith.chat.domain.chat.Chat;
-import com.punith.chat.domain.message.Message;
-import com.punith.chat.domain.user.User;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,21 +14,4 @@ public interface MessageReceiptRepository extends JpaRepository<MessageReceipt,
 
     List<MessageReceipt> findByMessage(Message message);
 
-
-    List<MessageReceipt> findByUserAndMessageChatAndReadTimestampIsNullOrderByMessageCreatedAtAsc(
-            User user,
-            Chat chat,
-            org.springframework.data.domain.Pageable pageable
-    );
-
-
-    @Query("""
-       select mr.message.chat.id as chatId, count(mr) as unreadCount
-       from MessageReceipt mr
-       where mr.user.id = :userId
-         and mr.readTimestamp is null
-       group by mr.message.chat.id
-       """)
-    List<Object[]> findUnreadCountsPerChat(@Param("userId") Long userId);
-
 }
@@ -1,9 +1,15 @@
 package com.punith.chat.repository;
 
 import com.punith.chat.domain.message.Message;
+import com.punith.chat.domain.message.MessageView;
 import com.punith.chat.domain.chat.Chat;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +17,70 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     List<Message> findByChatOrderByCreatedAtDesc(Chat chat, Pageable pageable);
 
+    @Query("""
+       select new com.punith.chat.domain.message.MessageView(m.id, m.chat.id, m.sender.id, m.body, m.createdAt,
+           m.seq)
+       from Message m
+       where m.chat.id = :chatId
+       order by m.createdAt desc, m.id desc
+       """)
+    List<MessageView> findLatestViews(@Param("chatId") Long chatId, Pageable pageable);
+
+    @Query("""
+       select new com.punith.chat.domain.message.MessageView(m.id, m.chat.id, m.sender.id, m.body, m.createdAt,
+           m.seq)
+       from Message m
+       where m.chat.id = :chatId
+         and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))
+       order by m.createdAt desc, m.id desc
+       """)
+    List<MessageView> findViewsBefore(@Param("chatId") Long chatId,
+                                      @Param("createdAt") OffsetDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    @Query("""
+       select new com.punith.chat.domain.message.MessageView(m.id, m.chat.id, m.sender.id, m.body, m.createdAt,
+           m.seq)
+       from Message m
+       where m.chat.id = :chatId
+         and (m.createdAt > :createdAt or (m.createdAt = :createdAt and m.id > :id))
+       order by m.createdAt asc, m.id asc
+       """)
+    List<MessageView> findViewsAfter(@Param("chatId") Long chatId,
+                                     @Param("createdAt") OffsetDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    @Query("""
+       select new com.punith.chat.domain.message.MessageView(m.id, m.chat.id, m.sender.id, m.body, m.createdAt,
+           m.seq)
+       from Message m
+       where m.chat.id = :chatId
+         and m.seq > :afterSeq
+       order by m.seq asc
+       """)
+    List<MessageView> findViewsAfterSeq(@Param("chatId") Long chatId,
+                                        @Param("afterSeq") Long afterSeq,
+                                        Pageable pageable);
+
+    long countByChatIdAndIdIn(Long chatId, Collection<Long> ids);
+
     Optional<Message> findByChatIdAndClientMessageId(Long chatId, String clientMessageId);
 
+    List<Message> findByChatIdAndClientMessageIdIn(Long chatId, Collection<String> clientMessageIds);
+
+    @Query("""
+       select m from Message m
+       where m.chat.id = :chatId
+         and m.id > :afterMessageId
+         and m.sender.id <> :userId
+       order by m.id asc
+       """)
+    List<Message> findUnreadAfter(@Param("chatId") Long chatId,
+                                  @Param("userId") Long userId,
+                                  @Param("afterMessageId") Long afterMessageId,
+                                  Pageable pageable);
+
+
 }
@@ -3,11 +3,15 @@ package com.punith.chat.service;
 import com.punith.chat.domain.chat.Chat;
 import com.punith.chat.domain.chat.ChatParticipant;
 import com.punith.chat.domain.user.User;
+import com.punith.chat.messaging.WsFanoutEvents.MembershipChangedFanoutEvent;
+import com.punith.chat.messaging.WsFanoutPublisher;
 import com.punith.chat.repository.ChatParticipantRepository;
 import com.punith.chat.repository.ChatRepository;
 import com.punith.chat.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
 
@@ -17,13 +21,22 @@ public class ChatService {
     private final ChatRepository chatRepository;
     private final ChatParticipantRepository chatParticipantRepository;
     private final UserRepository userRepository;
+    private final ParticipantDirectory participantDirectory;
+    private final WsFanoutPublisher wsFanoutPublisher;
+    private final InboxCache inboxCache;
 
     public ChatService(ChatRepository chatRepository,
                        ChatParticipantRepository chatParticipantRepository,
-                       UserRepository userRepository) {
+                       UserRepository userRepository,
+                       ParticipantDirectory participantDirectory,
+                       WsFanoutPublisher wsFanoutPublisher,
+                       InboxCache inboxCache) {
         this.chatRepository = chatRepository;
         this.chatParticipantRepository = chatParticipantRepository;
         this.userRepository = userRepository;
+        this.participantDirectory = participantDirectory;
+        this.wsFanoutPublisher = wsFanoutPublisher;
+        this.inboxCache = inboxCache;
     }
 
     @Transactional
@@ -60,21 +73,28 @@ public class ChatService {
             chatParticipantRepository.save(cp);
         }
 
+        invalidateMembershipAfterCommit(savedChat.getId(), uniqueIds);
+
         return savedChat;
     }
 
     public Chat getChatForUserOrThrow(Long chatId, Long userId) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new IllegalArgumentException("Chat not found: " + chatId));
-
-        boolean isParticipant = chatParticipantRepository.findByChat(chat).stream()
-                .anyMatch(cp -> cp.getUser().getId().equals(userId));
+        requireParticipant(chatId, userId);
+        return chatRepository.getReferenceById(chatId);
+    }
 
-        if (!isParticipant) {
-            throw new IllegalArgumentException("User " + userId + " is not a participant of chat " + chatId);
+    public void requireParticipant(Long chatId, Long userId) {
+        if (participantDirectory.isParticipant(chatId, userId)) {
+            return;
+        }
+        if (!chatRepository.existsById(chatId)) {
+            throw new IllegalArgumentException("Chat not found: " + chatId);
         }
+        throw new IllegalArgumentException("User " + userId + " is not a participant of chat " + chatId);
+    }
 
-        return chat;
+    public long[] getParticipantIds(Long chatId) {
+        return participantDirectory.getParticipantIds(chatId);
     }
 
     public List<ChatParticipant> getChatsForUser(Long userId) {
@@ -95,4 +115,15 @@ public class ChatService {
                 .toList();
     }
 
+    private void invalidateMembershipAfterCommit(Long chatId, Collection<Long> memberIds) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                participantDirectory.invalidate(chatId);
+                inboxCache.evict(memberIds);
+                wsFanoutPublisher.publishMembershipChanged(new MembershipChangedFanoutEvent(chatId));
+            }
+        });
+    }
+
 }
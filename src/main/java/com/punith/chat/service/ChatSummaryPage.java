@@ -0,0 +1,15 @@
+package com.punith.chat.service;
+
+import com.punith.chat.web.chat.dto.ChatSummaryResponse;
+
+import java.util.List;
+
+/**
+ * One page of a user's inbox, most recently active chats first.
+ *
+ * @param nextCursor pass as {@code before} to fetch the next page; null on the last page
+ */
+public record ChatSummaryPage(
+        List<ChatSummaryResponse> summaries,
+        KeysetCursor nextCursor
+) {}
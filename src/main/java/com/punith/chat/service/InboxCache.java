@@ -0,0 +1,627 @@
+package com.punith.chat.service;
+
+import com.punith.chat.domain.chat.Chat;
+import com.punith.chat.domain.chat.ChatSummaryView;
+import com.punith.chat.domain.message.Message;
+import com.punith.chat.repository.ChatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-through Redis copy of each user's inbox:
+ * <ul>
+ *   <li>{@code inbox:{userId}} – ZSET of chat ids scored by last activity (epoch millis)</li>
+ *   <li>{@code inbox_unread:{userId}} – HASH chatId → unread count, plus a {@code _loaded} marker</li>
+ *   <li>{@code chat_last:{chatId}} – HASH with the chat's title, newest message and seq, shared by all members</li>
+ * </ul>
+ * Incremental updates only touch inboxes that are already loaded, so a missing marker always means
+ * "rebuild from MySQL". Keys expire after {@code chat.inbox.cache.ttl-seconds}, which bounds how long any
+ * drift (e.g. an increment racing a rebuild) can survive before the next reconciliation.
+ */
+@Component
+public class InboxCache {
+
+    private static final Logger log = LoggerFactory.getLogger(InboxCache.class);
+
+    private static final String LOADED_FIELD = "_loaded";
+
+    /** Bumps a chat's activity score and unread count, only if the user's inbox is loaded. */
+    private static final RedisScript<Long> BUMP_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then return 0 end
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if not score or tonumber(score) < tonumber(ARGV[2]) then
+              redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+            end
+            if tonumber(ARGV[3]) > 0 then
+              redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[3])
+            end
+            return 1
+            """, Long.class);
+
+    /** Overwrites one unread count, only if the user's inbox is loaded. */
+    private static final RedisScript<Long> SET_UNREAD_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    /** Moves a chat's last-message fields forward, only if the chat hash is present. */
+    private static final RedisScript<Long> LAST_MESSAGE_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            local current = tonumber(redis.call('HGET', KEYS[1], 'msgId') or '0')
+            if current >= tonumber(ARGV[1]) then return 0 end
+            redis.call('HSET', KEYS[1], 'msgId', ARGV[1], 'senderId', ARGV[2], 'body', ARGV[3], 'at', ARGV[4])
+            if tonumber(redis.call('HGET', KEYS[1], 'seq') or '0') < tonumber(ARGV[5]) then
+              redis.call('HSET', KEYS[1], 'seq', ARGV[5])
+            end
+            return 1
+            """, Long.class);
+
+    /** Moves a chat's newest seq forward, only if the chat hash is present. */
+    private static final RedisScript<Long> ADVANCE_SEQ_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            if tonumber(redis.call('HGET', KEYS[1], 'seq') or '0') >= tonumber(ARGV[1]) then return 0 end
+            redis.call('HSET', KEYS[1], 'seq', ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * Advances the per-chat "counted up to" message id and returns the previous one, so a redelivered
+     * batch (whose messages were already counted) does not increment unread counters twice.
+     */
+    private static final RedisScript<Long> ADVANCE_COUNTED_SCRIPT = RedisScript.of("""
+            local previous = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if tonumber(ARGV[1]) > previous then
+              redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            end
+            return previous
+            """, Long.class);
+
+    private static final long COUNTED_TTL_SECONDS = 7 * 24 * 3600;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ChatRepository chatRepository;
+    private final ParticipantDirectory participantDirectory;
+    private final boolean enabled;
+    private final long ttlSeconds;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public InboxCache(StringRedisTemplate redisTemplate,
+                      ChatRepository chatRepository,
+                      ParticipantDirectory participantDirectory,
+                      @Value("${chat.inbox.cache.enabled:true}") boolean enabled,
+                      @Value("${chat.inbox.cache.ttl-seconds:900}") long ttlSeconds,
+                      MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.chatRepository = chatRepository;
+        this.participantDirectory = participantDirectory;
+        this.enabled = enabled;
+        this.ttlSeconds = ttlSeconds;
+
+        this.hitCounter = Counter.builder("chat_inbox_cache_hits_total")
+                .description("Inbox loads served from Redis")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat_inbox_cache_misses_total")
+                .description("Inbox loads rebuilt from MySQL")
+                .register(meterRegistry);
+    }
+
+    private static String inboxKey(long userId) {
+        return "inbox:{" + userId + "}";
+    }
+
+    private static String unreadKey(long userId) {
+        return "inbox_unread:{" + userId + "}";
+    }
+
+    private static String chatLastKey(long chatId) {
+        return "chat_last:" + chatId;
+    }
+
+    private static String countedKey(long chatId) {
+        return "chat_counted:" + chatId;
+    }
+
+    /**
+     * The whole inbox, most recently active first.
+     */
+    public List<ChatSummaryView> summaries(Long userId) {
+        if (!enabled) {
+            return chatRepository.findSummaries(userId, Pageable.unpaged());
+        }
+        List<ChatSummaryView> cached = tryReadPage(userId, null, -1);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+        missCounter.increment();
+        return rebuild(userId);
+    }
+
+    /**
+     * One page of the inbox ordered by (last activity, chat id) descending, strictly after {@code before}.
+     */
+    public List<ChatSummaryView> summaryPage(Long userId, KeysetCursor before, int pageSize) {
+        if (!enabled) {
+            PageRequest page = PageRequest.of(0, pageSize);
+            return before != null
+                    ? chatRepository.findSummariesBefore(userId, before.at(), before.id(), page)
+                    : chatRepository.findSummaries(userId, page);
+        }
+        List<ChatSummaryView> cached = tryReadPage(userId, before, pageSize);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+        missCounter.increment();
+
+        List<ChatSummaryView> page = new ArrayList<>(pageSize);
+        for (ChatSummaryView view : rebuild(userId)) {
+            if (page.size() == pageSize) {
+                break;
+            }
+            if (before == null || isBefore(view, before)) {
+                page.add(view);
+            }
+        }
+        return page;
+    }
+
+    private static boolean isBefore(ChatSummaryView view, KeysetCursor cursor) {
+        int cmp = view.lastActivityAt().compareTo(cursor.at());
+        return cmp < 0 || (cmp == 0 && view.chatId() < cursor.id());
+    }
+
+    /**
+     * Applies freshly persisted messages to the loaded inboxes of every participant of their chats.
+     * Messages at or below a chat's counted watermark are skipped, so applying the same message twice is harmless.
+     */
+    public void onMessagesPersisted(Collection<Message> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Message>> byChat = new LinkedHashMap<>();
+        for (Message m : messages) {
+            byChat.computeIfAbsent(m.getChat().getId(), id -> new ArrayList<>()).add(m);
+        }
+
+        List<Long> chatIds = new ArrayList<>(byChat.keySet());
+        List<ScriptCall> advances = new ArrayList<>(chatIds.size());
+        for (Long chatId : chatIds) {
+            long maxId = 0;
+            for (Message m : byChat.get(chatId)) {
+                maxId = Math.max(maxId, m.getId());
+            }
+            advances.add(new ScriptCall(ADVANCE_COUNTED_SCRIPT, 1,
+                    bytes(countedKey(chatId)), bytes(maxId), bytes(COUNTED_TTL_SECONDS)));
+        }
+        List<Object> previous = executeScripted(advances);
+
+        List<ScriptCall> updates = new ArrayList<>();
+        for (int i = 0; i < chatIds.size(); i++) {
+            Long chatId = chatIds.get(i);
+            long countedUpTo = ((Number) previous.get(i)).longValue();
+
+            int total = 0;
+            Map<Long, Integer> sentBy = new HashMap<>();
+            Message latest = null;
+            for (Message m : byChat.get(chatId)) {
+                if (m.getId() <= countedUpTo) {
+                    continue;
+                }
+                total++;
+                sentBy.merge(m.getSender().getId(), 1, Integer::sum);
+                if (latest == null || m.getId() > latest.getId()) {
+                    latest = m;
+                }
+            }
+            if (latest == null) {
+                continue;
+            }
+
+            long score = latest.getCreatedAt().toInstant().toEpochMilli();
+            for (long participantId : participantDirectory.getParticipantIds(chatId)) {
+                int increment = total - sentBy.getOrDefault(participantId, 0);
+                updates.add(new ScriptCall(BUMP_SCRIPT, 2,
+                        bytes(inboxKey(participantId)), bytes(unreadKey(participantId)),
+                        bytes(chatId), bytes(score), bytes(increment)));
+            }
+            updates.add(new ScriptCall(LAST_MESSAGE_SCRIPT, 1,
+                    bytes(chatLastKey(chatId)),
+                    bytes(latest.getId()), bytes(latest.getSender().getId()),
+                    bytes(Chat.lastMessagePreview(latest.getBody())), bytes(score), bytes(latest.getSeq())));
+        }
+        executeScripted(updates);
+    }
+
+    /**
+     * Moves the cached newest seq of each touched chat forward. The consumer calls this before publishing the
+     * fan-out, so a node never buffers an event whose seq {@link #lastSeqs} could not yet report.
+     */
+    public void onSeqsAssigned(Collection<Message> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> maxSeqByChat = new LinkedHashMap<>();
+        for (Message m : messages) {
+            maxSeqByChat.merge(m.getChat().getId(), m.getSeq(), Math::max);
+        }
+        List<ScriptCall> advances = new ArrayList<>(maxSeqByChat.size());
+        maxSeqByChat.forEach((chatId, seq) ->
+                advances.add(new ScriptCall(ADVANCE_SEQ_SCRIPT, 1, bytes(chatLastKey(chatId)), bytes(seq))));
+        executeScripted(advances);
+    }
+
+    /**
+     * The cached newest seq of each chat, read in one pipelined round trip. Chats whose hash is not cached (or was
+     * rebuilt since its last message) are absent from the result, so callers ask MySQL for those only; so are all
+     * chats when Redis cannot be read.
+     */
+    public Map<Long, Long> lastSeqs(Collection<Long> chatIds) {
+        if (!enabled || chatIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = new ArrayList<>(chatIds);
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Long chatId : ids) {
+                    stringConnection.hGet(chatLastKey(chatId), "seq");
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Chat seq cache read failed for {} chats, falling back to MySQL", ids.size(), e);
+            return Map.of();
+        }
+
+        Map<Long, Long> seqs = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (results.get(i) != null) {
+                seqs.put(ids.get(i), Long.valueOf(results.get(i).toString()));
+            }
+        }
+        return seqs;
+    }
+
+    /**
+     * Updates the reader's unread count for a chat after their read watermark moved, without asking MySQL.
+     * A watermark at or past the chat's cached last message means nothing is left unread. Anything short of
+     * that needs a count, so the reader's inbox is dropped and the next load rebuilds it.
+     */
+    public void onRead(Long userId, Long chatId, long lastReadMessageId) {
+        if (!enabled) {
+            return;
+        }
+        Object lastMessageId = redisTemplate.opsForHash().get(chatLastKey(chatId), "msgId");
+        if (lastMessageId != null && Long.parseLong(lastMessageId.toString()) <= lastReadMessageId) {
+            redisTemplate.execute(SET_UNREAD_SCRIPT, List.of(unreadKey(userId)), chatId.toString(), "0");
+        } else {
+            evict(List.of(userId));
+        }
+    }
+
+    /**
+     * Up to {@code limit} most recently active chat ids per user. Cached inboxes are read in one pipelined round
+     * trip; at most {@code maxLoads} of the remaining users are then read from MySQL, one bounded query each.
+     * Users beyond that are absent from the result, so callers can retry them later; users without any chat map
+     * to an empty list.
+     */
+    public Map<Long, List<Long>> recentChatIds(Collection<Long> userIds, int limit, int maxLoads) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        Map<Long, List<Long>> chatIdsByUser = new HashMap<>();
+        if (enabled) {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Long userId : ids) {
+                    stringConnection.zRevRange(inboxKey(userId), 0, limit - 1);
+                }
+                return null;
+            });
+
+            for (int i = 0; i < ids.size(); i++) {
+                if (results.get(i) instanceof Collection<?> members && !members.isEmpty()) {
+                    List<Long> chatIds = new ArrayList<>(members.size());
+                    for (Object member : members) {
+                        chatIds.add(Long.valueOf(member.toString()));
+                    }
+                    chatIdsByUser.put(ids.get(i), chatIds);
+                }
+            }
+        }
+
+        PageRequest page = PageRequest.of(0, limit);
+        int loads = 0;
+        for (Long userId : ids) {
+            if (loads == maxLoads) {
+                break;
+            }
+            if (!chatIdsByUser.containsKey(userId)) {
+                chatIdsByUser.put(userId, chatRepository.findRecentChatIds(userId, page));
+                loads++;
+            }
+        }
+        return chatIdsByUser;
+    }
+
+    /**
+     * Drops cached inboxes, e.g. after the user joined a chat; the next load rebuilds from MySQL.
+     */
+    public void evict(Collection<Long> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(userIds.size() * 2);
+        for (Long userId : userIds) {
+            keys.add(inboxKey(userId));
+            keys.add(unreadKey(userId));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    private List<ChatSummaryView> tryReadPage(Long userId, KeysetCursor before, int pageSize) {
+        try {
+            return readPage(userId, before, pageSize);
+        } catch (RuntimeException e) {
+            log.warn("Inbox cache read failed for user {}, falling back to MySQL", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns null when the inbox (or a chat on the requested page) is not cached.
+     */
+    private List<ChatSummaryView> readPage(Long userId, KeysetCursor before, int pageSize) {
+        String inboxKey = inboxKey(userId);
+        Set<TypedTuple<String>> entries;
+        if (pageSize < 0) {
+            entries = redisTemplate.opsForZSet().reverseRangeWithScores(inboxKey, 0, -1);
+        } else {
+            double max = before != null ? before.at().toInstant().toEpochMilli() : Double.POSITIVE_INFINITY;
+            // over-fetch a little so chats tied on the cursor's millisecond can be filtered out below
+            entries = redisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(inboxKey, Double.NEGATIVE_INFINITY, max, 0, pageSize + 16);
+        }
+        if (entries == null) {
+            return null;
+        }
+
+        List<Long> chatIds = new ArrayList<>(entries.size());
+        List<Long> scores = new ArrayList<>(entries.size());
+        for (TypedTuple<String> entry : entries) {
+            long chatId = Long.parseLong(entry.getValue());
+            long score = entry.getScore().longValue();
+            if (before != null
+                    && score == before.at().toInstant().toEpochMilli()
+                    && chatId >= before.id()) {
+                continue;
+            }
+            chatIds.add(chatId);
+            scores.add(score);
+        }
+        sortByScoreThenIdDesc(chatIds, scores);
+        if (pageSize >= 0 && chatIds.size() > pageSize) {
+            chatIds = chatIds.subList(0, pageSize);
+            scores = scores.subList(0, pageSize);
+        }
+
+        List<Long> pageChatIds = chatIds;
+        String unreadKey = unreadKey(userId);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            String[] fields = new String[pageChatIds.size() + 1];
+            fields[0] = LOADED_FIELD;
+            for (int i = 0; i < pageChatIds.size(); i++) {
+                fields[i + 1] = pageChatIds.get(i).toString();
+            }
+            stringConnection.hMGet(unreadKey, fields);
+            for (Long chatId : pageChatIds) {
+                stringConnection.hGetAll(chatLastKey(chatId));
+            }
+            return null;
+        });
+
+        @SuppressWarnings("unchecked")
+        List<String> unread = (List<String>) results.get(0);
+        if (unread == null || unread.get(0) == null) {
+            return null;
+        }
+
+        List<ChatSummaryView> views = new ArrayList<>(pageChatIds.size());
+        for (int i = 0; i < pageChatIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> last = (Map<String, String>) results.get(i + 1);
+            if (last == null || last.isEmpty()) {
+                return null;
+            }
+            String unreadCount = unread.get(i + 1);
+            views.add(new ChatSummaryView(
+                    pageChatIds.get(i),
+                    last.get("title"),
+                    "1".equals(last.get("group")),
+                    last.get("body"),
+                    last.containsKey("senderId") ? Long.valueOf(last.get("senderId")) : null,
+                    last.containsKey("at") ? toOffsetDateTime(Long.parseLong(last.get("at"))) : null,
+                    toOffsetDateTime(scores.get(i)),
+                    unreadCount != null ? Long.parseLong(unreadCount) : 0L
+            ));
+        }
+        return views;
+    }
+
+    private List<ChatSummaryView> rebuild(Long userId) {
+        List<ChatSummaryView> views = chatRepository.findSummaries(userId, Pageable.unpaged());
+
+        try {
+            String inboxKey = inboxKey(userId);
+            String unreadKey = unreadKey(userId);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.del(inboxKey, unreadKey);
+
+                Map<String, String> unread = new HashMap<>();
+                for (ChatSummaryView view : views) {
+                    stringConnection.zAdd(inboxKey, view.lastActivityAt().toInstant().toEpochMilli(),
+                            view.chatId().toString());
+                    unread.put(view.chatId().toString(), Long.toString(view.unreadCount()));
+
+                    Map<String, String> last = new HashMap<>();
+                    last.put("group", view.group() ? "1" : "0");
+                    if (view.title() != null) {
+                        last.put("title", view.title());
+                    }
+                    if (view.lastMessageAt() != null) {
+                        last.put("senderId", view.lastMessageSenderId().toString());
+                        last.put("body", view.lastMessageBody());
+                        last.put("at", Long.toString(view.lastMessageAt().toInstant().toEpochMilli()));
+                    }
+                    String chatLastKey = chatLastKey(view.chatId());
+                    stringConnection.hMSet(chatLastKey, last);
+                    stringConnection.expire(chatLastKey, ttlSeconds);
+                }
+                // the marker goes in last: increments before this point are skipped, not double counted
+                unread.put(LOADED_FIELD, Long.toString(System.currentTimeMillis()));
+                stringConnection.hMSet(unreadKey, unread);
+                stringConnection.expire(unreadKey, ttlSeconds);
+                stringConnection.expire(inboxKey, ttlSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to populate inbox cache for user {}", userId, e);
+        }
+        return views;
+    }
+
+    private static void sortByScoreThenIdDesc(List<Long> chatIds, List<Long> scores) {
+        Integer[] order = new Integer[chatIds.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Long.compare(scores.get(b), scores.get(a));
+            return cmp != 0 ? cmp : Long.compare(chatIds.get(b), chatIds.get(a));
+        });
+        List<Long> sortedIds = new ArrayList<>(order.length);
+        List<Long> sortedScores = new ArrayList<>(order.length);
+        for (int i : order) {
+            sortedIds.add(chatIds.get(i));
+            sortedScores.add(scores.get(i));
+        }
+        chatIds.clear();
+        chatIds.addAll(sortedIds);
+        scores.clear();
+        scores.addAll(sortedScores);
+    }
+
+    /**
+     * Runs the calls as one pipeline of EVALSHAs and returns their results in order. Scripts are only sent in
+     * full for the calls Redis refused with NOSCRIPT (first use, restart, failover; on a cluster each node has
+     * its own script cache, so that can be any subset). Those calls did not run, so just they are sent again as
+     * EVAL, which also caches the script on their node; the calls that succeeded are never repeated.
+     */
+    private List<Object> executeScripted(List<ScriptCall> calls) {
+        if (calls.isEmpty()) {
+            return List.of();
+        }
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ScriptCall call : calls) {
+                    connection.scriptingCommands().evalSha(
+                            call.script().getSha1(), ReturnType.INTEGER, call.numKeys(), call.keysAndArgs());
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            results = new ArrayList<>(e.getPipelineResult());
+            if (results.size() != calls.size() || !onlyNoScriptFailures(results)) {
+                throw e;
+            }
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) instanceof Throwable) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Object> retried = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i : missing) {
+                    ScriptCall call = calls.get(i);
+                    connection.scriptingCommands().eval(bytes(call.script().getScriptAsString()),
+                            ReturnType.INTEGER, call.numKeys(), call.keysAndArgs());
+                }
+                return null;
+            });
+            for (int j = 0; j < missing.size(); j++) {
+                results.set(missing.get(j), retried.get(j));
+            }
+        }
+        return results;
+    }
+
+    private static boolean onlyNoScriptFailures(List<Object> results) {
+        for (Object result : results) {
+            if (result instanceof Throwable t && !isNoScript(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static OffsetDateTime toOffsetDateTime(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One script call of a pipeline, kept so that it can be sent again on its own.
+     */
+    private record ScriptCall(RedisScript<Long> script, int numKeys, byte[]... keysAndArgs) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.punith.chat.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position of a boundary row: its timestamp (message created_at, chat last_activity_at) and id.
+ * Encoded for clients as an opaque URL-safe token.
+ */
+public record KeysetCursor(OffsetDateTime at, Long id) {
+
+    public String encode() {
+        String raw = at.toInstant() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(
+                    OffsetDateTime.ofInstant(Instant.parse(raw.substring(0, sep)), ZoneOffset.UTC),
+                    Long.parseLong(raw.substring(sep + 1))
+            );
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
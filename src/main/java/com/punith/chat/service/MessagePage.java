@@ -0,0 +1,17 @@
+package com.punith.chat.service;
+
+import com.punith.chat.domain.message.MessageView;
+
+import java.util.List;
+
+/**
+ * One page of chat history, newest first.
+ *
+ * @param olderCursor pass as {@code before} to fetch the next older page; null when the start of the chat was reached
+ * @param newerCursor pass as {@code after} to fetch messages newer than this page; null for an empty page
+ */
+public record MessagePage(
+        List<MessageView> messages,
+        KeysetCursor olderCursor,
+        KeysetCursor newerCursor
+) {}
@@ -1,38 +1,75 @@
 package com.punith.chat.service;
 
 import com.punith.chat.domain.chat.Chat;
-import com.punith.chat.domain.chat.ChatParticipant;
+import com.punith.chat.domain.chat.ChatSummaryView;
 import com.punith.chat.domain.message.Message;
 import com.punith.chat.domain.message.MessageReceipt;
+import com.punith.chat.domain.message.MessageView;
 import com.punith.chat.domain.user.User;
+import com.punith.chat.messaging.ChatMessageEvent;
+import com.punith.chat.repository.ChatParticipantRepository;
+import com.punith.chat.repository.ChatRepository;
+import com.punith.chat.repository.MessageBulkRepository;
 import com.punith.chat.repository.MessageReceiptRepository;
 import com.punith.chat.repository.MessageRepository;
 import com.punith.chat.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.data.domain.PageRequest;
 import com.punith.chat.web.message.dto.UnreadMessageResponse;
 import com.punith.chat.web.chat.dto.ChatSummaryResponse;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class MessageService {
 
+    private static final Logger log = LoggerFactory.getLogger(MessageService.class);
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final MessageRepository messageRepository;
     private final MessageReceiptRepository messageReceiptRepository;
     private final UserRepository userRepository;
+    private final ChatRepository chatRepository;
+    private final ChatParticipantRepository chatParticipantRepository;
+    private final MessageBulkRepository messageBulkRepository;
     private final ChatService chatService;
+    private final InboxCache inboxCache;
+    private final int perMessageReceiptsMaxParticipants;
 
     public MessageService(MessageRepository messageRepository,
                           MessageReceiptRepository messageReceiptRepository,
                           UserRepository userRepository,
-                          ChatService chatService) {
+                          ChatRepository chatRepository,
+                          ChatParticipantRepository chatParticipantRepository,
+                          MessageBulkRepository messageBulkRepository,
+                          ChatService chatService,
+                          InboxCache inboxCache,
+                          @Value("${chat.receipts.per-message-max-participants:0}") int perMessageReceiptsMaxParticipants) {
         this.messageRepository = messageRepository;
         this.messageReceiptRepository = messageReceiptRepository;
         this.userRepository = userRepository;
+        this.chatRepository = chatRepository;
+        this.chatParticipantRepository = chatParticipantRepository;
+        this.messageBulkRepository = messageBulkRepository;
         this.chatService = chatService;
+        this.inboxCache = inboxCache;
+        this.perMessageReceiptsMaxParticipants = perMessageReceiptsMaxParticipants;
     }
 
     @Transactional
@@ -52,134 +89,316 @@ public class MessageService {
     }
 
 
+    /**
+     * Persists a batch of already-authorized message events in one transaction using bulk inserts.
+     * Returns one message per event, in order; events whose clientMessageId was already stored
+     * (or repeats earlier in the same batch) resolve to the existing message.
+     */
+    @Transactional
+    public List<Message> sendMessageBatch(List<ChatMessageEvent> events) {
+        Map<Long, Map<String, Message>> existingByChat = findExistingByClientMessageId(events);
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        List<Message> result = new ArrayList<>(events.size());
+        List<Message> toInsert = new ArrayList<>(events.size());
+        List<Message> withReceipts = new ArrayList<>();
+        List<long[]> receiptParticipantIds = new ArrayList<>();
+
+        for (ChatMessageEvent event : events) {
+            Map<String, Message> known = existingByChat.computeIfAbsent(event.chatId(), id -> new HashMap<>());
+            if (event.clientMessageId() != null) {
+                Message existing = known.get(event.clientMessageId());
+                if (existing != null) {
+                    result.add(existing);
+                    continue;
+                }
+            }
+
+            Message m = new Message();
+            m.setChat(chatRepository.getReferenceById(event.chatId()));
+            m.setSender(userRepository.getReferenceById(event.senderId()));
+            m.setBody(event.body());
+            m.setClientMessageId(event.clientMessageId());
+            m.setCreatedAt(now);
+
+            if (event.clientMessageId() != null) {
+                known.put(event.clientMessageId(), m);
+            }
+            toInsert.add(m);
+            long[] participantIds = chatService.getParticipantIds(event.chatId());
+            if (keepsPerMessageReceipts(participantIds)) {
+                withReceipts.add(m);
+                receiptParticipantIds.add(participantIds);
+            }
+            result.add(m);
+        }
+
+        assignSeqs(toInsert);
+        messageBulkRepository.insertMessages(toInsert);
+        messageBulkRepository.insertReceipts(withReceipts, receiptParticipantIds, OffsetDateTime.now());
+
+        Map<Long, Message> latestByChat = new HashMap<>();
+        for (Message m : toInsert) {
+            latestByChat.merge(m.getChat().getId(), m, (a, b) -> a.getId() > b.getId() ? a : b);
+        }
+        for (Message latest : latestByChat.values()) {
+            updateLastMessage(latest);
+        }
+
+        return result;
+    }
+
+    /**
+     * One seq block per chat, taken in chatId order so concurrent batches lock chat rows in the same order.
+     */
+    private void assignSeqs(List<Message> toInsert) {
+        Map<Long, List<Message>> byChat = new TreeMap<>();
+        for (Message m : toInsert) {
+            byChat.computeIfAbsent(m.getChat().getId(), id -> new ArrayList<>()).add(m);
+        }
+        byChat.forEach((chatId, messages) -> {
+            long seq = messageBulkRepository.allocateSeqs(chatId, messages.size());
+            for (Message m : messages) {
+                m.setSeq(seq++);
+            }
+        });
+    }
+
+    private Map<Long, Map<String, Message>> findExistingByClientMessageId(List<ChatMessageEvent> events) {
+        Map<Long, List<String>> clientIdsByChat = new LinkedHashMap<>();
+        for (ChatMessageEvent event : events) {
+            if (event.clientMessageId() != null) {
+                clientIdsByChat.computeIfAbsent(event.chatId(), id -> new ArrayList<>()).add(event.clientMessageId());
+            }
+        }
+
+        Map<Long, Map<String, Message>> existingByChat = new HashMap<>();
+        clientIdsByChat.forEach((chatId, clientIds) -> {
+            Map<String, Message> byClientId = new HashMap<>();
+            for (Message m : messageRepository.findByChatIdAndClientMessageIdIn(chatId, clientIds)) {
+                byClientId.put(m.getClientMessageId(), m);
+            }
+            existingByChat.put(chatId, byClientId);
+        });
+        return existingByChat;
+    }
+
     private Message createAndSaveMessage(Chat chat, User sender, String body, String clientMessageId) {
         Message m = new Message();
         m.setChat(chat);
         m.setSender(sender);
         m.setBody(body);
         m.setClientMessageId(clientMessageId);
+        m.setSeq(messageBulkRepository.allocateSeqs(chat.getId(), 1));
 
         Message saved = messageRepository.save(m);
 
 
-        List<ChatParticipant> participants = chatService.getParticipantsForChat(chat.getId());
+        long[] participantIds = chatService.getParticipantIds(chat.getId());
 
-        OffsetDateTime now = OffsetDateTime.now();
+        if (keepsPerMessageReceipts(participantIds)) {
+            OffsetDateTime now = OffsetDateTime.now();
 
-        for (ChatParticipant cp : participants) {
-            MessageReceipt receipt = new MessageReceipt();
-            receipt.setMessage(saved);
-            receipt.setUser(cp.getUser());
-            receipt.setDeliveryTimestamp(now);
-            messageReceiptRepository.save(receipt);
+            for (long participantId : participantIds) {
+                MessageReceipt receipt = new MessageReceipt();
+                receipt.setMessage(saved);
+                receipt.setUser(userRepository.getReferenceById(participantId));
+                receipt.setDeliveryTimestamp(now);
+                messageReceiptRepository.save(receipt);
+            }
         }
 
+        updateLastMessage(saved);
+        updateInboxesAfterCommit(saved);
+
         return saved;
     }
 
-    public List<Message> getMessages(Long userId, Long chatId, int limit) {
-
-        Chat chat = chatService.getChatForUserOrThrow(chatId, userId);
-        return messageRepository.findByChatOrderByCreatedAtDesc(chat, PageRequest.of(0, limit));
+    /**
+     * Single-message writes (REST, consumer fallback) update cached inboxes themselves; batches are applied
+     * by the consumer. Applying a message twice is harmless, see {@link InboxCache#onMessagesPersisted}.
+     */
+    private void updateInboxesAfterCommit(Message message) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    inboxCache.onMessagesPersisted(List.of(message));
+                } catch (Exception e) {
+                    log.warn("Failed to update inbox cache for message {}", message.getId(), e);
+                }
+            }
+        });
     }
 
-    @Transactional
-    public void markMessagesAsRead(Long userId, Long chatId, List<Long> messageIds) {
-        chatService.getChatForUserOrThrow(chatId, userId);
+    /**
+     * Every read path (REST and the receipt consumer) goes through {@link #markMessagesAsRead}, so the cached
+     * unread count follows the watermark once it is committed.
+     */
+    private void updateInboxAfterReadCommit(Long userId, Long chatId, long lastReadMessageId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    inboxCache.onRead(userId, chatId, lastReadMessageId);
+                } catch (Exception e) {
+                    log.warn("Failed to update inbox cache for user {} chat {}", userId, chatId, e);
+                }
+            }
+        });
+    }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+    private void updateLastMessage(Message message) {
+        chatRepository.updateLastMessage(
+                message.getChat().getId(),
+                message.getId(),
+                message.getSender().getId(),
+                Chat.lastMessagePreview(message.getBody()),
+                message.getCreatedAt()
+        );
+    }
 
-        OffsetDateTime now = OffsetDateTime.now();
+    private boolean keepsPerMessageReceipts(long[] participantIds) {
+        return participantIds.length <= perMessageReceiptsMaxParticipants;
+    }
 
-        for (Long messageId : messageIds) {
-            Message message = messageRepository.findById(messageId)
-                    .orElseThrow(() -> new IllegalArgumentException("Message not found: " + messageId));
+    /**
+     * Keyset-paginated history, newest first. With {@code before} the page holds the messages just older than
+     * that cursor, with {@code after} the ones just newer, otherwise the latest messages.
+     */
+    @Transactional(readOnly = true)
+    public MessagePage getMessages(Long userId, Long chatId, KeysetCursor before, KeysetCursor after, int limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of before/after may be given");
+        }
+        chatService.requireParticipant(chatId, userId);
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest page = PageRequest.of(0, pageSize);
+
+        List<MessageView> messages;
+        if (after != null) {
+            messages = new ArrayList<>(
+                    messageRepository.findViewsAfter(chatId, after.at(), after.id(), page));
+            Collections.reverse(messages);
+        } else if (before != null) {
+            messages = messageRepository.findViewsBefore(chatId, before.at(), before.id(), page);
+        } else {
+            messages = messageRepository.findLatestViews(chatId, page);
+        }
 
+        if (messages.isEmpty()) {
+            // nothing newer than an "after" cursor: keep polling from the same spot
+            return new MessagePage(messages, null, after);
+        }
 
-            if (!message.getChat().getId().equals(chatId)) {
-                throw new IllegalArgumentException("Message " + messageId + " not in chat " + chatId);
-            }
+        MessageView newest = messages.get(0);
+        MessageView oldest = messages.get(messages.size() - 1);
+        // a short page from "latest"/"before" means we reached the start of the chat;
+        // an "after" page always has older messages behind it (at least the cursor message)
+        boolean hasOlder = after != null || messages.size() == pageSize;
+        return new MessagePage(
+                messages,
+                hasOlder ? new KeysetCursor(oldest.createdAt(), oldest.id()) : null,
+                new KeysetCursor(newest.createdAt(), newest.id())
+        );
+    }
 
-            MessageReceipt receipt = messageReceiptRepository
-                    .findByMessageAndUser(message, user)
-                    .orElseGet(() -> {
-                        MessageReceipt mr = new MessageReceipt();
-                        mr.setMessage(message);
-                        mr.setUser(user);
-                        return mr;
-                    });
-
-            if (receipt.getReadTimestamp() == null || receipt.getReadTimestamp().isBefore(now)) {
-                receipt.setReadTimestamp(now);
-            }
-            messageReceiptRepository.save(receipt);
-        }
+    /**
+     * Highest seq assigned in the chat so far (0 for none); a primary-key read.
+     */
+    @Transactional(readOnly = true)
+    public long lastSeq(Long chatId) {
+        return chatRepository.findLastSeq(chatId).orElse(0L);
     }
 
-    public List<UnreadMessageResponse> getUnreadMessages(Long userId, Long chatId, int limit) {
-        Chat chat = chatService.getChatForUserOrThrow(chatId, userId);
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
-
-        List<MessageReceipt> receipts = messageReceiptRepository
-                .findByUserAndMessageChatAndReadTimestampIsNullOrderByMessageCreatedAtAsc(
-                        user, chat, PageRequest.of(0, limit));
-
-        return receipts.stream()
-                .map(r -> {
-                    Message m = r.getMessage();
-                    return new UnreadMessageResponse(
-                            m.getId(),
-                            m.getChat().getId(),
-                            m.getSender().getId(),
-                            m.getBody(),
-                            m.getCreatedAt()
-                    );
-                })
-                .toList();
+    /**
+     * Messages of the chat with a seq above {@code afterSeq}, oldest first, for reconnect catch-up.
+     * {@code hasMore} means the client should ask again from the last returned seq.
+     */
+    @Transactional(readOnly = true)
+    public MessageSync syncMessages(Long userId, Long chatId, long afterSeq, int limit) {
+        chatService.requireParticipant(chatId, userId);
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<MessageView> messages = messageRepository.findViewsAfterSeq(chatId, afterSeq, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = messages.size() > pageSize;
+        return new MessageSync(hasMore ? messages.subList(0, pageSize) : messages, hasMore);
     }
 
-    public List<ChatSummaryResponse> getChatSummaries(Long userId) {
+    /**
+     * Marks messages read as one set operation and returns the user's new read watermark.
+     * {@code messageIds} and {@code upToMessageId} may be combined; every referenced id must belong to the chat.
+     * The watermark moves to the highest of them; per-message read timestamps (only kept for chats small enough
+     * to keep receipts) are set on the listed ids and on everything between the old watermark and
+     * {@code upToMessageId}.
+     */
+    @Transactional
+    public Long markMessagesAsRead(Long userId, Long chatId, List<Long> messageIds, Long upToMessageId) {
+        chatService.requireParticipant(chatId, userId);
 
-        List<Chat> chats = chatService.getChatsForUserAsChats(userId);
+        Set<Long> ids = messageIds != null ? new LinkedHashSet<>(messageIds) : new LinkedHashSet<>();
+        if (ids.isEmpty() && upToMessageId == null) {
+            throw new IllegalArgumentException("messageIds or upToMessageId is required");
+        }
 
+        Set<Long> referenced = new LinkedHashSet<>(ids);
+        if (upToMessageId != null) {
+            referenced.add(upToMessageId);
+        }
+        if (messageRepository.countByChatIdAndIdIn(chatId, referenced) != referenced.size()) {
+            throw new IllegalArgumentException("Messages " + referenced + " not all found in chat " + chatId);
+        }
 
-        List<Object[]> counts = messageReceiptRepository.findUnreadCountsPerChat(userId);
-        java.util.Map<Long, Long> unreadByChatId = new java.util.HashMap<>();
-        for (Object[] row : counts) {
-            Long chatId = (Long) row[0];
-            Long count = (Long) row[1];
-            unreadByChatId.put(chatId, count);
+        long lastReadMessageId = Collections.max(referenced);
+        long previousWatermark = chatParticipantRepository.findLastReadMessageId(chatId, userId).orElse(0L);
+        chatParticipantRepository.advanceReadWatermark(chatId, userId, lastReadMessageId);
+
+        if (keepsPerMessageReceipts(chatService.getParticipantIds(chatId))) {
+            long rangeUpTo = upToMessageId != null ? upToMessageId : 0L;
+            messageBulkRepository.markReceiptsRead(
+                    chatId,
+                    userId,
+                    ids,
+                    Math.min(previousWatermark, rangeUpTo),
+                    rangeUpTo,
+                    OffsetDateTime.now()
+            );
         }
+        updateInboxAfterReadCommit(userId, chatId, lastReadMessageId);
 
-        java.util.List<ChatSummaryResponse> result = new java.util.ArrayList<>();
+        return lastReadMessageId;
+    }
 
-        for (Chat chat : chats) {
+    public List<UnreadMessageResponse> getUnreadMessages(Long userId, Long chatId, int limit) {
+        chatService.requireParticipant(chatId, userId);
 
-            List<Message> latest = messageRepository.findByChatOrderByCreatedAtDesc(
-                    chat, PageRequest.of(0, 1)
-            );
-            Message last = latest.isEmpty() ? null : latest.get(0);
+        Long lastReadMessageId = chatParticipantRepository.findLastReadMessageId(chatId, userId).orElse(0L);
 
-            String lastBody = last != null ? last.getBody() : null;
-            Long lastSenderId = last != null ? last.getSender().getId() : null;
-            String lastCreatedAt = last != null ? last.getCreatedAt().toString() : null;
+        List<Message> unread = messageRepository.findUnreadAfter(
+                chatId, userId, lastReadMessageId, PageRequest.of(0, limit));
 
-            long unreadCount = unreadByChatId.getOrDefault(chat.getId(), 0L);
+        return unread.stream()
+                .map(m -> new UnreadMessageResponse(
+                        m.getId(),
+                        m.getChat().getId(),
+                        m.getSender().getId(),
+                        m.getBody(),
+                        m.getCreatedAt()
+                ))
+                .toList();
+    }
 
-            result.add(new ChatSummaryResponse(
-                    chat.getId(),
-                    chat.getTitle(),
-                    chat.isGroup(),
-                    lastBody,
-                    lastSenderId,
-                    lastCreatedAt,
-                    unreadCount
-            ));
+    /**
+     * The whole inbox, chats with unread messages first, then by last activity.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatSummaryResponse> getChatSummaries(Long userId) {
+        List<ChatSummaryResponse> result = new ArrayList<>();
+        for (ChatSummaryView view : inboxCache.summaries(userId)) {
+            result.add(toSummaryResponse(view));
         }
 
-
         result.sort((a, b) -> {
             int cmpUnread = Long.compare(b.unreadCount(), a.unreadCount());
             if (cmpUnread != 0) return cmpUnread;
@@ -193,4 +412,37 @@ public class MessageService {
 
         return result;
     }
+
+    /**
+     * One page of the inbox ordered by last activity, newest first, starting after {@code before}.
+     */
+    @Transactional(readOnly = true)
+    public ChatSummaryPage getChatSummaryPage(Long userId, KeysetCursor before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<ChatSummaryView> views = inboxCache.summaryPage(userId, before, pageSize);
+
+        List<ChatSummaryResponse> summaries = new ArrayList<>(views.size());
+        for (ChatSummaryView view : views) {
+            summaries.add(toSummaryResponse(view));
+        }
+
+        KeysetCursor next = null;
+        if (views.size() == pageSize) {
+            ChatSummaryView last = views.get(views.size() - 1);
+            next = new KeysetCursor(last.lastActivityAt(), last.chatId());
+        }
+        return new ChatSummaryPage(summaries, next);
+    }
+
+    private ChatSummaryResponse toSummaryResponse(ChatSummaryView view) {
+        return new ChatSummaryResponse(
+                view.chatId(),
+                view.title(),
+                view.group(),
+                view.lastMessageBody(),
+                view.lastMessageSenderId(),
+                view.lastMessageAt() != null ? view.lastMessageAt().toString() : null,
+                view.unreadCount() != null ? view.unreadCount() : 0L
+        );
+    }
 }
@@ -0,0 +1,15 @@
+package com.punith.chat.service;
+
+import com.punith.chat.domain.message.MessageView;
+
+import java.util.List;
+
+/**
+ * Messages after a seq, oldest first.
+ *
+ * @param hasMore more messages follow the last one returned
+ */
+public record MessageSync(
+        List<MessageView> messages,
+        boolean hasMore
+) {}
@@ -0,0 +1,138 @@
+package com.punith.chat.service;
+
+import com.punith.chat.repository.ChatParticipantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of chat membership keyed by chatId.
+ * Participant ids are kept as sorted primitive arrays, so membership checks are a binary search
+ * and fan-out can iterate them without touching JPA. Entries are invalidated through
+ * membership-changed events on Redis pub/sub; MySQL is only read on a miss.
+ */
+@Component
+public class ParticipantDirectory {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private final ChatParticipantRepository chatParticipantRepository;
+    private final int maxChats;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public ParticipantDirectory(ChatParticipantRepository chatParticipantRepository,
+                                @Value("${chat.participants.cache.max-chats:50000}") int maxChats,
+                                MeterRegistry meterRegistry) {
+        this.chatParticipantRepository = chatParticipantRepository;
+        this.maxChats = maxChats;
+
+        this.hitCounter = Counter.builder("chat_participant_directory_hits_total")
+                .description("Participant lookups served from the in-process directory")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat_participant_directory_misses_total")
+                .description("Participant lookups that had to load from the database")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("chat_participant_directory_evictions_total")
+                .description("Chats evicted from the participant directory to stay within its size bound")
+                .register(meterRegistry);
+        Gauge.builder("chat_participant_directory_size", entries, Map::size)
+                .description("Number of chats currently cached in the participant directory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the sorted participant user ids of a chat, or an empty array if the chat has none.
+     * The returned array is shared and must not be modified.
+     */
+    public long[] getParticipantIds(long chatId) {
+        Entry entry = entries.get(chatId);
+        if (entry != null) {
+            entry.lastAccess = clock.incrementAndGet();
+            hitCounter.increment();
+            return entry.userIds;
+        }
+
+        missCounter.increment();
+        long invalidationsBeforeLoad = invalidations.get();
+        long[] userIds = load(chatId);
+
+        // Empty results are not cached so a chat created on another node is never pinned as missing,
+        // and a load that raced with an invalidation is returned but not kept.
+        if (userIds.length > 0 && invalidations.get() == invalidationsBeforeLoad) {
+            entries.put(chatId, new Entry(userIds, clock.incrementAndGet()));
+            if (entries.size() > maxChats) {
+                evictOne();
+            }
+        }
+        return userIds;
+    }
+
+    public boolean isParticipant(long chatId, long userId) {
+        return Arrays.binarySearch(getParticipantIds(chatId), userId) >= 0;
+    }
+
+    public void invalidate(long chatId) {
+        invalidations.incrementAndGet();
+        entries.remove(chatId);
+    }
+
+    private long[] load(long chatId) {
+        List<Long> ids = chatParticipantRepository.findUserIdsByChatId(chatId);
+        if (ids.isEmpty()) {
+            return EMPTY;
+        }
+        long[] userIds = new long[ids.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = ids.get(i);
+        }
+        Arrays.sort(userIds);
+        return userIds;
+    }
+
+    /**
+     * Sampled LRU: looks at a handful of entries and drops the least recently used one,
+     * which keeps eviction O(1) without a global lock on the read path.
+     */
+    private void evictOne() {
+        Long victim = null;
+        long oldest = Long.MAX_VALUE;
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && it.hasNext(); i++) {
+            Map.Entry<Long, Entry> candidate = it.next();
+            if (candidate.getValue().lastAccess < oldest) {
+                oldest = candidate.getValue().lastAccess;
+                victim = candidate.getKey();
+            }
+        }
+        if (victim != null && entries.remove(victim) != null) {
+            evictionCounter.increment();
+        }
+    }
+
+    private static final class Entry {
+        final long[] userIds;
+        volatile long lastAccess;
+
+        Entry(long[] userIds, long lastAccess) {
+            this.userIds = userIds;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -1,43 +1,568 @@
 package com.punith.chat.session;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * User/session presence in Redis.
+ * <p>
+ * Connects and disconnects are queued and written by one flusher thread. Each drained batch (up to
+ * {@code chat.presence.flush-max-batch}) is written in one pipelined round trip: one Lua call per Redis Cluster
+ * hash slot touched, plus one update of the node's session index, instead of four commands per session.
+ * A batch that fails is put back at the head of the
+ * queue and retried with backoff; every op is idempotent, so re-applying a partly written batch is harmless.
+ * Besides the per-user keys, every node keeps a
+ * {@code node_sessions:<nodeId>} index and a {@code node_alive:<nodeId>} key with a TTL that it renews every
+ * {@code chat.presence.heartbeat-interval-ms}. Each node also sweeps: the sessions of any node whose alive key
+ * has expired are removed in chunks. A crashed node's ghost sessions are therefore gone within about one TTL,
+ * and a node restarting under the same id clears its own leftovers first.
+ * <p>
+ * Every script declares all the keys it touches in KEYS and never spans hash slots: the per-user keys carry a
+ * {@code {userId}} hash tag and the per-node keys a {@code {nodeId}} tag, so the same code runs against a single
+ * Redis and against Redis Cluster.
+ */
 @Service
-public class RedisSessionService {
+public class RedisSessionService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSessionService.class);
+
+    private static final String PRESENCE_NODES_KEY = "presence_nodes";
+    private static final String SWEEP_CHUNK = "1000";
+    private static final long RETRY_MIN_BACKOFF_MS = 100;
+    private static final long RETRY_MAX_BACKOFF_MS = 2_000;
+
+    /**
+     * Applies session changes of users that share a hash slot. KEYS come in groups of (user_sessions, user_nodes,
+     * session) for each change; ARGV[1] is the node id, followed by one group of (op, userId, sessionId,
+     * connectedAt) per change, where op is A(dd), R(emove) or L (remove the user's last session on the node).
+     */
+    private static final RedisScript<Long> APPLY_SCRIPT = RedisScript.of("""
+            local node = ARGV[1]
+            local a = 2
+            for k = 1, #KEYS, 3 do
+              local op, userId, sessionId = ARGV[a], ARGV[a + 1], ARGV[a + 2]
+              if op == 'A' then
+                redis.call('SADD', KEYS[k], sessionId)
+                redis.call('HSET', KEYS[k + 2], 'userId', userId, 'nodeId', node, 'connectedAt', ARGV[a + 3])
+                redis.call('SADD', KEYS[k + 1], node)
+              else
+                redis.call('SREM', KEYS[k], sessionId)
+                redis.call('DEL', KEYS[k + 2])
+                if op == 'L' then
+                  redis.call('SREM', KEYS[k + 1], node)
+                end
+              end
+              a = a + 4
+            end
+            return #KEYS / 3
+            """, Long.class);
+
+    /**
+     * Returns up to ARGV[1] of the sessions indexed for a node (KEYS: node_sessions, node_alive), or nil if the
+     * node's alive key is back unless ARGV[2] forces the sweep. The caller removes them and then their index
+     * entries, and repeats until nothing is left.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SWEEP_SCRIPT = RedisScript.of("""
+            if ARGV[2] ~= '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+              return false
+            end
+            return redis.call('SRANDMEMBER', KEYS[1], ARGV[1])
+            """, List.class);
 
     private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final long nodeTtlMs;
+    private final long heartbeatIntervalMs;
+    private final int flushMaxBatch;
+    private final long lastSeenTtlSeconds;
 
-    public RedisSessionService(StringRedisTemplate redisTemplate) {
+    private final LinkedBlockingDeque<PresenceOp> pending = new LinkedBlockingDeque<>();
+    private final List<Runnable> resyncListeners = new CopyOnWriteArrayList<>();
+    private final Counter flushFailures;
+    private final Counter sweptSessions;
+
+    private volatile boolean running;
+    private boolean joined;
+    private Thread flusher;
+    private ScheduledExecutorService heartbeat;
+
+    public RedisSessionService(StringRedisTemplate redisTemplate,
+                               @Value("${ws.node-id:node-1}") String nodeId,
+                               @Value("${chat.presence.node-ttl-ms:30000}") long nodeTtlMs,
+                               @Value("${chat.presence.heartbeat-interval-ms:10000}") long heartbeatIntervalMs,
+                               @Value("${chat.presence.flush-max-batch:500}") int flushMaxBatch,
+                               @Value("${chat.presence.last-seen-ttl-days:30}") int lastSeenTtlDays,
+                               MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId;
+        this.nodeTtlMs = nodeTtlMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.flushMaxBatch = Math.max(1, flushMaxBatch);
+        this.lastSeenTtlSeconds = TimeUnit.DAYS.toSeconds(lastSeenTtlDays);
+
+        Gauge.builder("chat_presence_pending_ops", pending, LinkedBlockingDeque::size)
+                .description("Session registrations/removals waiting to be written to Redis")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("chat_presence_flush_failed_total")
+                .description("Presence batch writes that failed and were queued for retry")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+        this.sweptSessions = Counter.builder("chat_presence_swept_sessions_total")
+                .description("Sessions of expired nodes removed by the presence sweeper")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+    }
+
+    private static String userSessionsKey(Long userId) {
+        return "user_sessions:{" + userId + "}";
+    }
+
+    private static String userNodesKey(Long userId) {
+        return "user_nodes:{" + userId + "}";
+    }
+
+    private static String sessionKey(Long userId, String sessionId) {
+        return "session:{" + userId + "}:" + sessionId;
+    }
+
+    private String lastSeenKey(Long userId) {
+        return "last_seen:" + userId;
+    }
+
+    private String statusKey(Long userId) {
+        return "presence_status:" + userId;
+    }
+
+    private static String nodeSessionsKey(String nodeId) {
+        return "node_sessions:{" + nodeId + "}";
+    }
+
+    private static String nodeAliveKey(String nodeId) {
+        return "node_alive:{" + nodeId + "}";
+    }
+
+    public void registerSession(Long userId, String sessionId) {
+        submit(new PresenceOp('A', userId, sessionId, Instant.now().toEpochMilli()));
+    }
+
+    /**
+     * @param lastLocalSession whether this was the user's last session on this node,
+     *                         in which case the node is dropped from the user's presence index
+     */
+    public void unregisterSession(Long userId, String sessionId, boolean lastLocalSession) {
+        submit(new PresenceOp(lastLocalSession ? 'L' : 'R', userId, sessionId, 0L));
+    }
+
+    /**
+     * Called when this node finds that another node swept its sessions (it missed heartbeats for longer than
+     * the TTL, e.g. a long GC pause or a Redis outage). The listener should register every local session again.
+     */
+    public void onResync(Runnable listener) {
+        resyncListeners.add(listener);
+    }
+
+    private void submit(PresenceOp op) {
+        if (running) {
+            pending.add(op);
+        } else {
+            // before start or after stop there is no flusher; write straight through
+            apply(List.of(op));
+        }
+    }
+
+    /**
+     * Resolves which nodes hold sessions for each of the given users in one pipelined round trip.
+     * Users that are not connected anywhere are absent from the result.
+     */
+    public Map<Long, Set<String>> findNodesForUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (Long userId : userIds) {
+                stringConnection.sMembers(userNodesKey(userId));
+            }
+            return null;
+        });
+
+        Map<Long, Set<String>> nodesByUser = new HashMap<>();
+        Iterator<Long> ids = userIds.iterator();
+        for (Object result : results) {
+            Long userId = ids.next();
+            if (result instanceof Set<?> nodes && !nodes.isEmpty()) {
+                @SuppressWarnings("unchecked")
+                Set<String> nodeIds = (Set<String>) nodes;
+                nodesByUser.put(userId, nodeIds);
+            }
+        }
+        return nodesByUser;
+    }
+
+    /**
+     * Stores last-seen times in one pipelined round trip; callers batch these rather than writing per activity.
+     */
+    public void saveLastSeen(Map<Long, Long> lastSeenByUser) {
+        if (lastSeenByUser.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            lastSeenByUser.forEach((userId, at) -> stringConnection.set(lastSeenKey(userId), Long.toString(at),
+                    Expiration.seconds(lastSeenTtlSeconds), RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+    }
+
+    /**
+     * Last-seen epoch millis per user; users never seen (or expired) are absent.
+     */
+    public Map<Long, Long> findLastSeen(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        List<String> values = redisTemplate.opsForValue().multiGet(ids.stream().map(this::lastSeenKey).toList());
+
+        Map<Long, Long> lastSeen = new HashMap<>();
+        for (int i = 0; values != null && i < ids.size(); i++) {
+            if (values.get(i) != null) {
+                lastSeen.put(ids.get(i), Long.parseLong(values.get(i)));
+            }
+        }
+        return lastSeen;
+    }
+
+    /**
+     * Stores the status each user last reported while connected (e.g. AWAY) in one pipelined round trip, so any
+     * node can answer presence queries for users connected elsewhere. A null status clears it.
+     */
+    public void saveStatus(Map<Long, String> statusByUser) {
+        if (statusByUser.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            statusByUser.forEach((userId, status) -> {
+                if (status == null) {
+                    stringConnection.del(statusKey(userId));
+                } else {
+                    stringConnection.set(statusKey(userId), status,
+                            Expiration.seconds(lastSeenTtlSeconds), RedisStringCommands.SetOption.upsert());
+                }
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Stored status per user; users without one are absent.
+     */
+    public Map<Long, String> findStatus(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        List<String> values = redisTemplate.opsForValue().multiGet(ids.stream().map(this::statusKey).toList());
+
+        Map<Long, String> status = new HashMap<>();
+        for (int i = 0; values != null && i < ids.size(); i++) {
+            if (values.get(i) != null) {
+                status.put(ids.get(i), values.get(i));
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public void start() {
+        // whatever a previous process with this node id left behind is stale by definition
+        try {
+            sweep(nodeId, true);
+        } catch (RuntimeException e) {
+            log.warn("Could not clear stale presence of node {}; it expires with the old heartbeat", nodeId, e);
+        }
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "presence-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("presence-heartbeat-"));
+        heartbeat.scheduleWithFixedDelay(this::heartbeatAndSweep, 0, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        heartbeat.shutdownNow();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PresenceOp> rest = new ArrayList<>();
+        pending.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += flushMaxBatch) {
+            apply(rest.subList(i, Math.min(rest.size(), i + flushMaxBatch)));
+        }
+        // sessions still open are being closed with the server; drop them all at once instead of one by one
+        try {
+            redisTemplate.delete(nodeAliveKey(nodeId));
+            sweep(nodeId, true);
+        } catch (RuntimeException e) {
+            log.warn("Could not clear presence of node {} on shutdown; other nodes will sweep it", nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the embedded web server, so no WebSocket connects before the flusher runs
+     * and the removals from sessions closed during shutdown are still written.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void flushLoop() {
+        List<PresenceOp> batch = new ArrayList<>(flushMaxBatch);
+        long backoffMs = RETRY_MIN_BACKOFF_MS;
+        while (running) {
+            try {
+                PresenceOp first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, flushMaxBatch - 1);
+                if (apply(batch)) {
+                    backoffMs = RETRY_MIN_BACKOFF_MS;
+                } else {
+                    // keep the batch ahead of anything queued since, so a session's add still precedes its removal
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        pending.addFirst(batch.get(i));
+                    }
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(RETRY_MAX_BACKOFF_MS, backoffMs * 2);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
     }
 
-    private String userSessionsKey(Long userId) {
-        return "user_sessions:" + userId;
+    private boolean apply(List<PresenceOp> ops) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (PresenceOp op : ops) {
+            (op.type() == 'A' ? added : removed).add(op.userId() + ":" + op.sessionId());
+        }
+        try {
+            // index additions go first and removals last, so a half-written batch never leaves unindexed keys
+            executeScripted(connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                if (!added.isEmpty()) {
+                    stringConnection.sAdd(nodeSessionsKey(nodeId), added.toArray(String[]::new));
+                }
+                writeUserKeys(stringConnection, nodeId, ops);
+                if (!removed.isEmpty()) {
+                    stringConnection.sRem(nodeSessionsKey(nodeId), removed.toArray(String[]::new));
+                }
+                return null;
+            });
+            return true;
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            log.warn("Failed to write {} presence updates to Redis", ops.size(), e);
+            return false;
+        }
     }
 
-    private String sessionKey(String sessionId) {
-        return "session:" + sessionId;
+    /**
+     * Queues one {@link #APPLY_SCRIPT} call per hash slot, keeping each user's changes in submission order.
+     */
+    private static void writeUserKeys(StringRedisConnection connection, String node, List<PresenceOp> ops) {
+        Map<Integer, List<PresenceOp>> bySlot = new LinkedHashMap<>();
+        for (PresenceOp op : ops) {
+            bySlot.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(userSessionsKey(op.userId())),
+                    slot -> new ArrayList<>()).add(op);
+        }
+        for (List<PresenceOp> group : bySlot.values()) {
+            String[] keysAndArgs = new String[group.size() * 7 + 1];
+            int k = 0;
+            int a = group.size() * 3;
+            keysAndArgs[a++] = node;
+            for (PresenceOp op : group) {
+                keysAndArgs[k++] = userSessionsKey(op.userId());
+                keysAndArgs[k++] = userNodesKey(op.userId());
+                keysAndArgs[k++] = sessionKey(op.userId(), op.sessionId());
+                keysAndArgs[a++] = String.valueOf(op.type());
+                keysAndArgs[a++] = Long.toString(op.userId());
+                keysAndArgs[a++] = op.sessionId();
+                keysAndArgs[a++] = Long.toString(op.connectedAt());
+            }
+            connection.evalSha(APPLY_SCRIPT.getSha1(), ReturnType.INTEGER, group.size() * 3, keysAndArgs);
+        }
     }
 
-    public void registerSession(Long userId, String sessionId, String nodeId) {
-        long now = Instant.now().toEpochMilli();
+    /**
+     * Runs a pipeline that calls {@link #APPLY_SCRIPT} by its SHA. If Redis reports the script missing (first
+     * use, restart, failover), it is loaded and the pipeline run again; every presence change is idempotent, so
+     * whatever part of the first attempt was applied is harmless.
+     */
+    private void executeScripted(RedisCallback<Object> pipeline) {
+        try {
+            redisTemplate.executePipelined(pipeline);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            redisTemplate.execute((RedisCallback<Object>) connection ->
+                    ((StringRedisConnection) connection).scriptLoad(APPLY_SCRIPT.getScriptAsString()));
+            redisTemplate.executePipelined(pipeline);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void heartbeatAndSweep() {
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.set(nodeAliveKey(nodeId), Long.toString(Instant.now().toEpochMilli()),
+                        Expiration.milliseconds(nodeTtlMs), RedisStringCommands.SetOption.upsert());
+                stringConnection.sAdd(PRESENCE_NODES_KEY, nodeId);
+                stringConnection.sMembers(PRESENCE_NODES_KEY);
+                return null;
+            });
 
+            boolean rejoined = Long.valueOf(1L).equals(results.get(1));
+            if (rejoined && joined) {
+                log.warn("Node {} was swept after missing heartbeats; re-registering local sessions", nodeId);
+                resyncListeners.forEach(Runnable::run);
+            }
+            joined = true;
 
-        redisTemplate.opsForSet().add(userSessionsKey(userId), sessionId);
+            if (results.get(2) instanceof Set<?> nodes) {
+                sweepExpired(nodes);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Presence heartbeat failed for node {}", nodeId, e);
+        }
+    }
 
+    private void sweepExpired(Set<?> nodes) {
+        List<String> others = new ArrayList<>();
+        for (Object node : nodes) {
+            if (!nodeId.equals(node)) {
+                others.add((String) node);
+            }
+        }
+        if (others.isEmpty()) {
+            return;
+        }
 
-        String key = sessionKey(sessionId);
-        redisTemplate.opsForHash().put(key, "userId", userId.toString());
-        redisTemplate.opsForHash().put(key, "nodeId", nodeId);
-        redisTemplate.opsForHash().put(key, "connectedAt", Long.toString(now));
+        List<Object> alive = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (String node : others) {
+                stringConnection.exists(nodeAliveKey(node));
+            }
+            return null;
+        });
+        for (int i = 0; i < others.size(); i++) {
+            if (Boolean.FALSE.equals(alive.get(i))) {
+                sweep(others.get(i), false);
+            }
+        }
     }
 
-    public void unregisterSession(Long userId, String sessionId) {
+    private void sweep(String node, boolean force) {
+        List<String> keys = List.of(nodeSessionsKey(node), nodeAliveKey(node));
+        long total = 0;
+        while (true) {
+            @SuppressWarnings("unchecked")
+            List<String> members = redisTemplate.execute(SWEEP_SCRIPT, keys, SWEEP_CHUNK, force ? "1" : "0");
+            if (members == null) {
+                // the node came back mid-sweep; dropping it from presence_nodes makes it re-register everything
+                if (total > 0) {
+                    redisTemplate.opsForSet().remove(PRESENCE_NODES_KEY, node);
+                }
+                break;
+            }
+            if (members.isEmpty()) {
+                redisTemplate.opsForSet().remove(PRESENCE_NODES_KEY, node);
+                break;
+            }
+
+            List<PresenceOp> ops = new ArrayList<>(members.size());
+            for (String member : members) {
+                int sep = member.indexOf(':');
+                ops.add(new PresenceOp('L', Long.parseLong(member.substring(0, sep)), member.substring(sep + 1), 0L));
+            }
+            executeScripted(connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                writeUserKeys(stringConnection, node, ops);
+                stringConnection.sRem(nodeSessionsKey(node), members.toArray(String[]::new));
+                return null;
+            });
+            total += members.size();
+        }
+
+        if (total > 0) {
+            sweptSessions.increment(total);
+            log.info("Swept {} stale sessions of node {}", total, node);
+        }
+    }
 
-        redisTemplate.opsForSet().remove(userSessionsKey(userId), sessionId);
-        redisTemplate.delete(sessionKey(sessionId));
+    private record PresenceOp(char type, Long userId, String sessionId, long connectedAt) {
     }
 }
@@ -3,6 +3,8 @@ package com.punith.chat.web.chat;
 import com.punith.chat.domain.chat.Chat;
 import com.punith.chat.domain.chat.ChatParticipant;
 import com.punith.chat.service.ChatService;
+import com.punith.chat.service.ChatSummaryPage;
+import com.punith.chat.service.KeysetCursor;
 import com.punith.chat.service.MessageService;
 import com.punith.chat.web.chat.dto.ChatResponse;
 import com.punith.chat.web.chat.dto.ChatSummaryResponse;
@@ -18,6 +20,9 @@ import java.util.stream.Collectors;
 @RequestMapping("/chats")
 public class ChatController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_SUMMARY_PAGE_SIZE = 50;
+
     private final ChatService chatService;
     private final MessageService messageService;
 
@@ -88,10 +93,25 @@ public class ChatController {
 
     @GetMapping("/summary")
     public ResponseEntity<List<ChatSummaryResponse>> getChatSummaries(
-            @RequestHeader("X-User-Id") String userIdHeader
+            @RequestHeader("X-User-Id") String userIdHeader,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before
     ) {
         Long currentUserId = getCurrentUserId(userIdHeader);
-        List<ChatSummaryResponse> summaries = messageService.getChatSummaries(currentUserId);
-        return ResponseEntity.ok(summaries);
+        if (limit == null && before == null) {
+            List<ChatSummaryResponse> summaries = messageService.getChatSummaries(currentUserId);
+            return ResponseEntity.ok(summaries);
+        }
+
+        ChatSummaryPage page = messageService.getChatSummaryPage(
+                currentUserId,
+                before != null ? KeysetCursor.decode(before) : null,
+                limit != null ? limit : DEFAULT_SUMMARY_PAGE_SIZE
+        );
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().encode());
+        }
+        return response.body(page.summaries());
     }
 }
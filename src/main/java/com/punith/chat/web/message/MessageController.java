@@ -1,12 +1,15 @@
 package com.punith.chat.web.message;
 
 import com.punith.chat.domain.message.Message;
+import com.punith.chat.service.KeysetCursor;
+import com.punith.chat.service.MessagePage;
 import com.punith.chat.service.MessageService;
 import com.punith.chat.web.message.dto.MarkReadRequest;
 import com.punith.chat.web.message.dto.MessageResponse;
 import com.punith.chat.web.message.dto.SendMessageRequest;
 import com.punith.chat.web.message.dto.UnreadMessageResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +19,9 @@ import java.util.List;
 @RequestMapping("/chats/{chatId}/messages")
 public class MessageController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String PREV_CURSOR_HEADER = "X-Prev-Cursor";
+
     private final MessageService messageService;
 
     public MessageController(MessageService messageService) {
@@ -48,7 +54,8 @@ public class MessageController {
                 message.getChat().getId(),
                 message.getSender().getId(),
                 message.getBody(),
-                message.getCreatedAt()
+                message.getCreatedAt(),
+                message.getSeq()
         );
 
         return ResponseEntity.ok(response);
@@ -58,23 +65,39 @@ public class MessageController {
     public ResponseEntity<List<MessageResponse>> getMessages(
             @RequestHeader("X-User-Id") String userIdHeader,
             @PathVariable Long chatId,
-            @RequestParam(defaultValue = "50") int limit
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after
     ) {
         Long currentUserId = getCurrentUserId(userIdHeader);
 
-        List<Message> messages = messageService.getMessages(currentUserId, chatId, limit);
+        MessagePage page = messageService.getMessages(
+                currentUserId,
+                chatId,
+                before != null ? KeysetCursor.decode(before) : null,
+                after != null ? KeysetCursor.decode(after) : null,
+                limit
+        );
 
-        List<MessageResponse> responses = messages.stream()
+        List<MessageResponse> responses = page.messages().stream()
                 .map(m -> new MessageResponse(
-                        m.getId(),
-                        m.getChat().getId(),
-                        m.getSender().getId(),
-                        m.getBody(),
-                        m.getCreatedAt()
+                        m.id(),
+                        m.chatId(),
+                        m.senderId(),
+                        m.body(),
+                        m.createdAt(),
+                        m.seq()
                 ))
                 .toList();
 
-        return ResponseEntity.ok(responses);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.olderCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.olderCursor().encode());
+        }
+        if (page.newerCursor() != null) {
+            headers.add(PREV_CURSOR_HEADER, page.newerCursor().encode());
+        }
+        return ResponseEntity.ok().headers(headers).body(responses);
     }
 
     @PostMapping("/read")
@@ -84,7 +107,7 @@ public class MessageController {
             @Valid @RequestBody MarkReadRequest request
     ) {
         Long currentUserId = getCurrentUserId(userIdHeader);
-        messageService.markMessagesAsRead(currentUserId, chatId, request.messageIds());
+        messageService.markMessagesAsRead(currentUserId, chatId, request.messageIds(), request.upToMessageId());
         return ResponseEntity.ok().build();
     }
 
@@ -1,9 +1,11 @@
 package com.punith.chat.web.message.dto;
 
-import jakarta.validation.constraints.NotEmpty;
-
 import java.util.List;
 
+/**
+ * Either (or both) of an explicit id list and an inclusive "everything up to this message" bound.
+ */
 public record MarkReadRequest(
-        @NotEmpty List<Long> messageIds
+        List<Long> messageIds,
+        Long upToMessageId
 ) {}
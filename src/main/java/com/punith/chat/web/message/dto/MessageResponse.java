@@ -7,5 +7,6 @@ public record MessageResponse(
         Long chatId,
         Long senderId,
         String body,
-        OffsetDateTime createdAt
+        OffsetDateTime createdAt,
+        Long seq
 ) {}
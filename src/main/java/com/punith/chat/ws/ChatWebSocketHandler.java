@@ -2,18 +2,20 @@ package com.punith.chat.ws;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.punith.chat.domain.chat.Chat;
-import com.punith.chat.domain.chat.ChatParticipant;
 import com.punith.chat.domain.message.Message;
-import com.punith.chat.domain.user.User;
-import com.punith.chat.messaging.ChatMessageEvent;
 import com.punith.chat.messaging.ChatMessageProducer;
 import com.punith.chat.messaging.ReadReceiptEvent;
 import com.punith.chat.messaging.ReadReceiptProducer;
+import com.punith.chat.domain.message.MessageView;
 import com.punith.chat.service.ChatService;
+import com.punith.chat.service.InboxCache;
+import com.punith.chat.service.MessageService;
+import com.punith.chat.service.MessageSync;
 import com.punith.chat.session.RedisSessionService;
 import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.PresenceFanoutEvent;
 import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.TypingFanoutEvent;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,11 +25,12 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Value;
 import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
 import io.micrometer.core.instrument.Gauge;
@@ -42,31 +45,65 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     private final ChatMessageProducer messageProducer;
     private final ObjectMapper objectMapper;
     private final ReadReceiptProducer readReceiptProducer;
+    private final MessageService messageService;
     private final RedisSessionService redisSessionService;
+    private final WsOutboundDispatcher outboundDispatcher;
+    private final ReplayBuffer replayBuffer;
+    private final InboxCache inboxCache;
+    private final SessionRegistry sessionRegistry;
+    private final EphemeralRelay ephemeralRelay;
+    private final FrameAdmission frameAdmission;
+    private final WsInboundDecoder inboundDecoder;
     private final String nodeId;
 
-
-    private final ConcurrentHashMap<Long, CopyOnWriteArraySet<WebSocketSession>> userSessions =
-            new ConcurrentHashMap<>();
+    private static final String OUTBOUND_ATTRIBUTE = "outbound";
+    private static final String BUDGETS_ATTRIBUTE = "budgets";
+    private static final int DEFAULT_SYNC_LIMIT = 100;
+    private static final int MAX_RESUME_CHATS = 50;
+    private static final int MAX_PRESENCE_QUERY = 200;
 
     public ChatWebSocketHandler( ChatService chatService,
                                  ChatMessageProducer messageProducer,
                                  ReadReceiptProducer readReceiptProducer,
+                                 MessageService messageService,
                                  RedisSessionService redisSessionService,
                                 ObjectMapper objectMapper,
+                                 WsOutboundDispatcher outboundDispatcher,
+                                 ReplayBuffer replayBuffer,
+                                 InboxCache inboxCache,
+                                 SessionRegistry sessionRegistry,
+                                 EphemeralRelay ephemeralRelay,
+                                 FrameAdmission frameAdmission,
+                                 WsInboundDecoder inboundDecoder,
                                  @Value("${ws.node-id:node-1}") String nodeId,
                                  MeterRegistry meterRegistry) {
         this.chatService = chatService;
         this.messageProducer = messageProducer;
         this.readReceiptProducer = readReceiptProducer;
+        this.messageService = messageService;
         this.redisSessionService = redisSessionService;
         this.objectMapper = objectMapper;
+        this.outboundDispatcher = outboundDispatcher;
+        this.replayBuffer = replayBuffer;
+        this.inboxCache = inboxCache;
+        this.sessionRegistry = sessionRegistry;
+        this.ephemeralRelay = ephemeralRelay;
+        this.frameAdmission = frameAdmission;
+        this.inboundDecoder = inboundDecoder;
         this.nodeId = nodeId;
 
         Gauge.builder("chat_ws_active_sessions", this, ChatWebSocketHandler::totalActiveSessions)
                 .description("Number of active WebSocket sessions on this node")
                 .tag("nodeId", nodeId)
                 .register(meterRegistry);
+        Gauge.builder("chat_ws_active_users", sessionRegistry, SessionRegistry::userCount)
+                .description("Number of users with at least one WebSocket session on this node")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+
+        // another node swept our presence after we missed heartbeats; put every live session back
+        redisSessionService.onResync(() -> sessionRegistry.forEach((userId, outbound) ->
+                redisSessionService.registerSession(userId, outbound.getId())));
     }
 
     @Override
@@ -88,15 +125,23 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         Long userId = Long.parseLong(userIdHeader);
         session.getAttributes().put("userId", userId);
 
+        OutboundSession outbound = outboundDispatcher.open(session);
+        session.getAttributes().put(OUTBOUND_ATTRIBUTE, outbound);
 
-        userSessions
-                .computeIfAbsent(userId, id -> new java.util.concurrent.CopyOnWriteArraySet<>())
-                .add(session);
+        // per-user limits are shared with the user's other sessions on this node
+        session.getAttributes().put(BUDGETS_ATTRIBUTE, frameAdmission.open(userId));
 
+        boolean firstLocalSession = sessionRegistry.add(userId, outbound);
 
-        redisSessionService.registerSession(userId, session.getId(), nodeId);
+        redisSessionService.registerSession(userId, session.getId());
+        ephemeralRelay.onConnected(userId, firstLocalSession);
 
         log.info("WebSocket connected: userId={}, session={}, nodeId={}", userId, session.getId(), nodeId);
+
+        Object resume = session.getAttributes().get(UserHandshakeInterceptor.RESUME_ATTRIBUTE);
+        if (resume != null) {
+            resume(session, userId, resume.toString());
+        }
     }
 
     @Override
@@ -106,16 +151,20 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             Long userId = (Long) userIdObj;
 
 
-            java.util.Set<WebSocketSession> sessions = userSessions.get(userId);
-            if (sessions != null) {
-                sessions.remove(session);
-                if (sessions.isEmpty()) {
-                    userSessions.remove(userId);
-                }
+            OutboundSession outbound = (OutboundSession) session.getAttributes().remove(OUTBOUND_ATTRIBUTE);
+            if (outbound != null) {
+                outbound.release();
+            }
+            FrameAdmission.Budgets budgets = (FrameAdmission.Budgets) session.getAttributes().remove(BUDGETS_ATTRIBUTE);
+            if (budgets != null) {
+                frameAdmission.close(budgets);
             }
 
+            boolean lastLocalSession = sessionRegistry.remove(userId, outbound);
+            ephemeralRelay.onDisconnected(userId, lastLocalSession);
 
-            redisSessionService.unregisterSession(userId, session.getId());
+
+            redisSessionService.unregisterSession(userId, session.getId(), lastLocalSession);
 
             log.info("WebSocket disconnected: userId={}, session={}, nodeId={}, status={}",
                     userId, session.getId(), nodeId, status);
@@ -131,9 +180,17 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
         Long userId = (Long) userIdObj;
 
+        FrameAdmission.Budgets budgets = (FrameAdmission.Budgets) session.getAttributes().get(BUDGETS_ATTRIBUTE);
+        // charged before parsing, so a flood is shed as cheaply as possible
+        FrameAdmission.Rejection rejection = frameAdmission.admitFrame(budgets);
+        if (rejection != null) {
+            reject(session, budgets, FrameAdmission.Kind.OTHER, rejection, null);
+            return;
+        }
+
         WsInboundMessage inbound;
         try {
-            inbound = objectMapper.readValue(message.getPayload(), WsInboundMessage.class);
+            inbound = inboundDecoder.decode(message.asBytes());
         } catch (JsonProcessingException e) {
             sendError(session, "Invalid JSON");
             return;
@@ -144,42 +201,65 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
+        FrameAdmission.Kind kind = FrameAdmission.kindOf(inbound.type);
+        rejection = frameAdmission.admit(budgets, kind);
+        if (rejection != null) {
+            reject(session, budgets, kind, rejection, inbound.clientMessageId);
+            return;
+        }
+
         switch (inbound.type) {
             case "SEND_MESSAGE" -> handleSendMessage(session, userId, inbound);
             case "READ_MESSAGES" -> handleReadMessages(session, userId, inbound);
+            case "SYNC" -> handleSync(session, userId, inbound);
+            case "TYPING" -> handleTyping(session, userId, inbound);
+            case "PRESENCE" -> handlePresence(session, userId, inbound);
+            case "PRESENCE_QUERY" -> handlePresenceQuery(session, inbound);
             default -> sendError(session, "Unknown type: " + inbound.type);
         }
     }
 
     private void handleSendMessage(WebSocketSession session, Long userId, WsInboundMessage inbound) throws IOException {
-        if (inbound.chatId == null || inbound.body == null) {
+        if (inbound.chatId == WsInboundMessage.ABSENT || !inbound.hasBody()) {
             sendError(session, "chatId and body are required");
             return;
         }
 
         try {
-            chatService.getChatForUserOrThrow(inbound.chatId, userId);
+            chatService.requireParticipant(inbound.chatId, userId);
 
-
-            ChatMessageEvent event = new ChatMessageEvent(
+            // acknowledge only once the broker has the event; the ack callback runs on the producer thread
+            messageProducer.sendMessage(
                     inbound.chatId,
                     userId,
-                    inbound.body,
+                    inbound.body(),
+                    inbound.bodyOffset(),
+                    inbound.bodyLength(),
                     inbound.clientMessageId,
                     System.currentTimeMillis()
-            );
-
-
-            messageProducer.sendMessageEvent(event);
-
-            sendJson(session, new WsOutboundWrapper<>(
-                    "MESSAGE_ACCEPTED",
-                    new MessageAcceptedPayload(
-                            inbound.clientMessageId
-                    )
-            ));
-
-
+            ).whenComplete((result, ex) -> {
+                try {
+                    if (ex == null) {
+                        sendJson(session, new WsOutboundWrapper<>(
+                                "MESSAGE_ACCEPTED",
+                                new MessageAcceptedPayload(
+                                        inbound.clientMessageId
+                                )
+                        ));
+                    } else {
+                        sendJson(session, new WsOutboundWrapper<>(
+                                "MESSAGE_REJECTED",
+                                new MessageRejectedPayload(
+                                        inbound.clientMessageId,
+                                        "Message could not be queued, retry",
+                                        null
+                                )
+                        ));
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to acknowledge SEND_MESSAGE on session {}", session.getId(), e);
+                }
+            });
 
         } catch (IllegalArgumentException e) {
             sendError(session, e.getMessage());
@@ -190,18 +270,23 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
 
     private void handleReadMessages(WebSocketSession session, Long userId, WsInboundMessage inbound) throws IOException {
-        if (inbound.chatId == null || inbound.messageIds == null || inbound.messageIds.isEmpty()) {
-            sendError(session, "chatId and messageIds are required");
+        boolean hasIds = inbound.messageIds != null && inbound.messageIds.length > 0;
+        boolean hasUpTo = inbound.upToMessageId != WsInboundMessage.ABSENT;
+        if (inbound.chatId == WsInboundMessage.ABSENT || (!hasIds && !hasUpTo)) {
+            sendError(session, "chatId and messageIds or upToMessageId are required");
             return;
         }
 
         try {
-            chatService.getChatForUserOrThrow(inbound.chatId, userId);
+            chatService.requireParticipant(inbound.chatId, userId);
 
+            List<Long> messageIds = hasIds ? boxed(inbound.messageIds) : null;
+            Long upToMessageId = hasUpTo ? inbound.upToMessageId : null;
             ReadReceiptEvent event = new ReadReceiptEvent(
                     inbound.chatId,
                     userId,
-                    inbound.messageIds,
+                    messageIds,
+                    upToMessageId,
                     System.currentTimeMillis()
             );
 
@@ -211,7 +296,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                     "READ_ACCEPTED",
                     new ReadAcceptedPayload(
                             inbound.chatId,
-                            inbound.messageIds
+                            messageIds,
+                            upToMessageId
                     )
             ));
 
@@ -223,66 +309,188 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    public void broadcastNewMessage(Message msg) {
-        Chat chat = msg.getChat();
+    /**
+     * Catch-up: everything in the chat after {@code afterSeq} (0 = from the start), oldest first.
+     * A client that sees a seq gap in NEW_MESSAGE can ask the same.
+     */
+    private void handleSync(WebSocketSession session, Long userId, WsInboundMessage inbound) throws IOException {
+        if (inbound.chatId == WsInboundMessage.ABSENT || inbound.afterSeq == WsInboundMessage.ABSENT) {
+            sendError(session, "chatId and afterSeq are required");
+            return;
+        }
 
+        try {
+            sendSync(session, userId, inbound.chatId, inbound.afterSeq,
+                    inbound.limit > 0 ? inbound.limit : DEFAULT_SYNC_LIMIT,
+                    inboxCache.lastSeqs(List.of(inbound.chatId)).get(inbound.chatId));
+        } catch (IllegalArgumentException e) {
+            sendError(session, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error handling SYNC", e);
+            sendError(session, "Internal error");
+        }
+    }
 
-        List<ChatParticipant> participantEntities =
-                chatService.getParticipantsForChat(chat.getId());
+    /**
+     * Ephemeral, see {@link EphemeralRelay}: no acknowledgement, and nothing is persisted.
+     */
+    private void handleTyping(WebSocketSession session, Long userId, WsInboundMessage inbound) throws IOException {
+        if (inbound.chatId == WsInboundMessage.ABSENT) {
+            sendError(session, "chatId is required");
+            return;
+        }
+
+        try {
+            chatService.requireParticipant(inbound.chatId, userId);
+            ephemeralRelay.typing(inbound.chatId, userId, inbound.typing);
+        } catch (IllegalArgumentException e) {
+            sendError(session, e.getMessage());
+        }
+    }
+
+    private void handlePresence(WebSocketSession session, Long userId, WsInboundMessage inbound) throws IOException {
+        if (!EphemeralRelay.ONLINE.equals(inbound.status) && !EphemeralRelay.AWAY.equals(inbound.status)) {
+            sendError(session, "status must be ONLINE or AWAY");
+            return;
+        }
+        ephemeralRelay.presence(userId, inbound.status);
+    }
+
+    private void handlePresenceQuery(WebSocketSession session, WsInboundMessage inbound) throws IOException {
+        if (inbound.userIds == null || inbound.userIds.length == 0 || inbound.userIds.length > MAX_PRESENCE_QUERY) {
+            sendError(session, "userIds must list 1 to " + MAX_PRESENCE_QUERY + " users");
+            return;
+        }
+
+        try {
+            List<PresencePayload> presence = new ArrayList<>(inbound.userIds.length);
+            for (PresenceFanoutEvent event : ephemeralRelay.lookup(boxed(inbound.userIds))) {
+                presence.add(new PresencePayload(event.userId(), event.status(), event.lastSeenAtMillis()));
+            }
+            sendJson(session, new WsOutboundWrapper<>("PRESENCE_RESULT", presence));
+        } catch (Exception e) {
+            log.error("Error handling PRESENCE_QUERY", e);
+            sendError(session, "Internal error");
+        }
+    }
+
+    /**
+     * Answers from this node's {@link ReplayBuffer} when it covers the gap, else from the (chat_id, seq) index.
+     * The buffer's freshness is checked against {@code cachedLastSeq} (the chat's seq in Redis), and against
+     * MySQL only when Redis did not have it.
+     */
+    private void sendSync(WebSocketSession session, Long userId, Long chatId, long afterSeq, int limit,
+                          Long cachedLastSeq) throws IOException {
+        chatService.requireParticipant(chatId, userId);
+        int pageSize = Math.max(1, Math.min(limit, MessageService.MAX_PAGE_SIZE));
+
+        List<NewMessagePayload> messages;
+        boolean hasMore;
+        List<NewMessageFanoutEvent> buffered =
+                replayBuffer.since(chatId, afterSeq, pageSize,
+                        () -> cachedLastSeq != null ? cachedLastSeq : messageService.lastSeq(chatId));
+        if (buffered != null) {
+            hasMore = buffered.size() > pageSize;
+            messages = new ArrayList<>(Math.min(buffered.size(), pageSize));
+            for (NewMessageFanoutEvent event : hasMore ? buffered.subList(0, pageSize) : buffered) {
+                messages.add(new NewMessagePayload(
+                        event.messageId(),
+                        event.chatId(),
+                        event.senderId(),
+                        event.body(),
+                        event.createdAtIso(),
+                        event.seq()
+                ));
+            }
+        } else {
+            MessageSync sync = messageService.syncMessages(userId, chatId, afterSeq, pageSize);
+            hasMore = sync.hasMore();
+            messages = new ArrayList<>(sync.messages().size());
+            for (MessageView m : sync.messages()) {
+                messages.add(new NewMessagePayload(
+                        m.id(),
+                        m.chatId(),
+                        m.senderId(),
+                        m.body(),
+                        m.createdAt().toString(),
+                        m.seq()
+                ));
+            }
+        }
+
+        sendJson(session, new WsOutboundWrapper<>(
+                "SYNC_RESULT",
+                new SyncResultPayload(chatId, messages, hasMore)
+        ));
+    }
+
+    /**
+     * Handshake resume positions ({@code X-Resume} header or {@code resume} query parameter),
+     * formatted as {@code chatId:seq,chatId:seq}, each answered like a SYNC request. The chats' cached seqs are
+     * read in one pipelined round trip up front.
+     */
+    private void resume(WebSocketSession session, Long userId, String positions) {
+        String[] entries = positions.split(",");
+        Map<Long, Long> afterSeqs = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length && i < MAX_RESUME_CHATS; i++) {
+            String entry = entries[i].trim();
+            int separator = entry.indexOf(':');
+            try {
+                afterSeqs.put(Long.parseLong(entry.substring(0, separator)),
+                        Long.parseLong(entry.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                log.debug("Skipping resume position '{}' for user {}: {}", entry, userId, e.getMessage());
+            }
+        }
+        if (afterSeqs.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> cachedLastSeqs = inboxCache.lastSeqs(afterSeqs.keySet());
+        for (Map.Entry<Long, Long> position : afterSeqs.entrySet()) {
+            Long chatId = position.getKey();
+            try {
+                sendSync(session, userId, chatId, position.getValue(), DEFAULT_SYNC_LIMIT,
+                        cachedLastSeqs.get(chatId));
+            } catch (IllegalArgumentException e) {
+                log.debug("Skipping resume of chat {} for user {}: {}", chatId, userId, e.getMessage());
+            } catch (Exception e) {
+                log.warn("Failed to resume chat {} for user {}", chatId, userId, e);
+            }
+        }
+    }
 
-        Set<User> participants = participantEntities.stream()
-                .map(ChatParticipant::getUser)
-                .collect(Collectors.toSet());
+    public void broadcastNewMessage(Message msg) {
+        Long chatId = msg.getChat().getId();
 
         NewMessagePayload payload = new NewMessagePayload(
                 msg.getId(),
-                chat.getId(),
+                chatId,
                 msg.getSender().getId(),
                 msg.getBody(),
-                msg.getCreatedAt().toString()
+                msg.getCreatedAt().toString(),
+                msg.getSeq()
         );
 
-
-        for (User user : participants) {
-            Set<WebSocketSession> sessions = userSessions.get(user.getId());
-            if (sessions == null) {
-                continue;
-            }
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    sendJsonSafe(session, new WsOutboundWrapper<>("NEW_MESSAGE", payload));
-                }
-            }
-        }
+        sendToUsers(chatService.getParticipantIds(chatId), encodeFrame("NEW_MESSAGE", payload));
     }
 
     public void broadcastReadReceipt(Long chatId,
                                      Long readerId,
-                                     java.util.List<Long> messageIds,
+                                     List<Long> messageIds,
+                                     Long lastReadMessageId,
                                      OffsetDateTime readAt) {
 
-        java.util.List<com.punith.chat.domain.chat.ChatParticipant> participantEntities =
-                chatService.getParticipantsForChat(chatId);
-
         ReadReceiptPayload payload = new ReadReceiptPayload(
                 chatId,
                 readerId,
                 messageIds,
+                lastReadMessageId,
                 readAt.toString()
         );
 
-        for (com.punith.chat.domain.chat.ChatParticipant cp : participantEntities) {
-            Long userId = cp.getUser().getId();
-            java.util.Set<WebSocketSession> sessions = userSessions.get(userId);
-            if (sessions == null) {
-                continue;
-            }
-            for (WebSocketSession s : sessions) {
-                if (s.isOpen()) {
-                    sendJsonSafe(s, new WsOutboundWrapper<>("READ_RECEIPT", payload));
-                }
-            }
-        }
+        sendToUsers(chatService.getParticipantIds(chatId),
+                encodeFrame("READ_RECEIPT", payload, readReceiptKey(chatId, readerId)));
     }
 
 
@@ -292,27 +500,18 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 event.chatId(),
                 event.senderId(),
                 event.body(),
-                event.createdAtIso()
+                event.createdAtIso(),
+                event.seq()
         );
 
-
-        java.util.List<com.punith.chat.domain.chat.ChatParticipant> participantEntities =
-                chatService.getParticipantsForChat(event.chatId());
-
-        java.util.Set<Long> userIds = participantEntities.stream()
-                .map(cp -> cp.getUser().getId())
-                .collect(java.util.stream.Collectors.toSet());
-
-        for (Long userId : userIds) {
-            java.util.Set<org.springframework.web.socket.WebSocketSession> sessions = userSessions.get(userId);
-            if (sessions == null) continue;
-
-            for (org.springframework.web.socket.WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    sendJsonSafe(session, new WsOutboundWrapper<>("NEW_MESSAGE", payload));
-                }
-            }
+        OutboundFrame frame = null;
+        try {
+            frame = OutboundFrame.encode(objectMapper, "NEW_MESSAGE", payload, null,
+                    event.acceptedAtMillis() != null ? event.acceptedAtMillis() : 0L);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode outbound NEW_MESSAGE frame", e);
         }
+        sendToUsers(chatService.getParticipantIds(event.chatId()), frame);
     }
 
 
@@ -321,68 +520,152 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 event.chatId(),
                 event.readerId(),
                 event.messageIds(),
+                event.lastReadMessageId(),
                 event.readAtIso()
         );
 
-        java.util.List<com.punith.chat.domain.chat.ChatParticipant> participantEntities =
-                chatService.getParticipantsForChat(event.chatId());
-
-        for (com.punith.chat.domain.chat.ChatParticipant cp : participantEntities) {
-            Long userId = cp.getUser().getId();
-            java.util.Set<org.springframework.web.socket.WebSocketSession> sessions = userSessions.get(userId);
-            if (sessions == null) continue;
-
-            for (org.springframework.web.socket.WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    sendJsonSafe(session, new WsOutboundWrapper<>("READ_RECEIPT", payload));
-                }
-            }
-        }
+        sendToUsers(chatService.getParticipantIds(event.chatId()),
+                encodeFrame("READ_RECEIPT", payload, readReceiptKey(event.chatId(), event.readerId())));
     }
 
     public void broadcastMessageStatusFanout(MessageStatusFanoutEvent event) {
+        OutboundSession[] sessions = sessionRegistry.sessions(event.userId());
+        if (sessions.length == 0) {
+            return;
+        }
+
         MessageStatusPayload payload = new MessageStatusPayload(
                 event.messageId(),
                 event.chatId(),
                 event.status()
         );
 
-        Long targetUserId = event.userId();
+        OutboundFrame frame = encodeFrame("MESSAGE_STATUS", payload);
+        if (frame == null) {
+            return;
+        }
+        for (OutboundSession session : sessions) {
+            session.enqueue(frame);
+        }
+    }
 
-        java.util.Set<org.springframework.web.socket.WebSocketSession> sessions = userSessions.get(targetUserId);
-        if (sessions == null) {
+    public void broadcastTypingFanout(TypingFanoutEvent event) {
+        long remaining = event.expiresAtMillis() - System.currentTimeMillis();
+        if (remaining <= 0) {
             return;
         }
+        TypingPayload payload = new TypingPayload(event.chatId(), event.userId(), event.typing(), remaining);
+        sendToUsers(chatService.getParticipantIds(event.chatId()),
+                encodeFrame("TYPING", payload, "ty:" + event.chatId() + ":" + event.userId()));
+    }
 
-        for (org.springframework.web.socket.WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                sendJsonSafe(session, new WsOutboundWrapper<>("MESSAGE_STATUS", payload));
+    /**
+     * Delivered once per local user across the event's chats, and not to the user whose presence it is.
+     */
+    public void broadcastPresenceFanout(PresenceFanoutEvent event) {
+        Set<Long> recipients = new HashSet<>();
+        for (Long chatId : event.chatIds()) {
+            for (long participantId : chatService.getParticipantIds(chatId)) {
+                recipients.add(participantId);
             }
         }
+        recipients.remove(event.userId());
+
+        OutboundFrame frame = encodeFrame("PRESENCE",
+                new PresencePayload(event.userId(), event.status(), event.lastSeenAtMillis()),
+                "pr:" + event.userId());
+        if (frame == null) {
+            return;
+        }
+        for (Long recipient : recipients) {
+            for (OutboundSession session : sessionRegistry.sessions(recipient)) {
+                session.enqueue(frame);
+            }
+        }
+    }
+
+    /**
+     * A newer read watermark for the same reader supersedes an older one still waiting in a send queue.
+     */
+    private static String readReceiptKey(Long chatId, Long readerId) {
+        return "rr:" + chatId + ":" + readerId;
     }
+
     public int totalActiveSessions() {
-        int total = 0;
-        for (java.util.Set<org.springframework.web.socket.WebSocketSession> sessions : userSessions.values()) {
-            total += sessions.size();
+        return sessionRegistry.sessionCount();
+    }
+
+    /**
+     * Queues one pre-encoded frame on every local session of the given users.
+     */
+    private void sendToUsers(long[] userIds, OutboundFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        sessionRegistry.forEachSession(userIds, session -> session.enqueue(frame));
+    }
+
+    private OutboundFrame encodeFrame(String type, Object payload) {
+        return encodeFrame(type, payload, null);
+    }
+
+    private OutboundFrame encodeFrame(String type, Object payload, String coalesceKey) {
+        try {
+            return OutboundFrame.encode(objectMapper, type, payload, coalesceKey);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode outbound {} frame", type, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * A rejected SEND_MESSAGE is answered with MESSAGE_REJECTED so the client can match and retry it; anything
+     * else gets an ERROR with a code. Both carry {@code retryAfterMs} when a rate limit was hit.
+     */
+    private void reject(WebSocketSession session,
+                        FrameAdmission.Budgets budgets,
+                        FrameAdmission.Kind kind,
+                        FrameAdmission.Rejection rejection,
+                        String clientMessageId) throws IOException {
+        long retryAfterMs = frameAdmission.retryAfterMillis(budgets, kind, rejection);
+        String error = rejection == FrameAdmission.Rejection.OVERLOADED
+                ? "Server busy, retry later"
+                : "Rate limit exceeded";
+
+        if (kind == FrameAdmission.Kind.MESSAGE) {
+            sendJson(session, new WsOutboundWrapper<>(
+                    "MESSAGE_REJECTED",
+                    new MessageRejectedPayload(clientMessageId, error, retryAfterMs)
+            ));
+        } else {
+            sendJson(session, new WsOutboundMessage("ERROR", "{\"error\":\"" + error + "\",\"code\":\""
+                    + rejection + "\",\"retryAfterMs\":" + retryAfterMs + "}"));
         }
-        return total;
     }
 
+    private static List<Long> boxed(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
 
     private void sendError(WebSocketSession session, String error) throws IOException {
         sendJson(session, new WsOutboundMessage("ERROR", "{\"error\":\"" + error + "\"}"));
     }
 
     private void sendJson(WebSocketSession session, Object obj) throws IOException {
-        String json = objectMapper.writeValueAsString(obj);
-        session.sendMessage(new TextMessage(json));
-    }
-
-    private void sendJsonSafe(WebSocketSession session, Object obj) {
-        try {
-            sendJson(session, obj);
-        } catch (IOException e) {
-            log.warn("Failed to send WS message to session {}", session.getId(), e);
+        byte[] json = objectMapper.writeValueAsBytes(obj);
+        TextMessage message = new TextMessage(json);
+
+        // replies share the session's send queue so they never interleave with a fan-out drain
+        OutboundSession outbound = (OutboundSession) session.getAttributes().get(OUTBOUND_ATTRIBUTE);
+        if (outbound != null) {
+            outbound.enqueue(OutboundFrame.reply(message));
+        } else {
+            session.sendMessage(message);
         }
     }
 
@@ -401,24 +684,52 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             Long chatId,
             Long senderId,
             String body,
-            String createdAt
+            String createdAt,
+            Long seq
+    ) {}
+
+    public record SyncResultPayload(
+            Long chatId,
+            List<NewMessagePayload> messages,
+            boolean hasMore
     ) {}
 
     public record MessageAcceptedPayload(
             String clientMessageId
     ) {}
 
+    public record MessageRejectedPayload(
+            String clientMessageId,
+            String error,
+            Long retryAfterMs
+    ) {}
+
     public record ReadAcceptedPayload(
             Long chatId,
-            java.util.List<Long> messageIds
+            java.util.List<Long> messageIds,
+            Long upToMessageId
     ) {}
 
     public record ReadReceiptPayload(
             Long chatId,
             Long readerId,
             java.util.List<Long> messageIds,
+            Long lastReadMessageId,
             String readAt
     ) {}
+    public record TypingPayload(
+            Long chatId,
+            Long userId,
+            Boolean typing,
+            long expiresInMs
+    ) {}
+
+    public record PresencePayload(
+            Long userId,
+            String status,
+            Long lastSeenAt
+    ) {}
+
     public record MessageStatusPayload(
             Long messageId,
             Long chatId,
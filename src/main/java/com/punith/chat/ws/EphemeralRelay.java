@@ -0,0 +1,342 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.WsFanoutEvents.PresenceFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.TypingFanoutEvent;
+import com.punith.chat.messaging.WsFanoutPublisher;
+import com.punith.chat.service.InboxCache;
+import com.punith.chat.session.RedisSessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing indicators and presence. These are ephemeral: they never go through Kafka or MySQL.
+ * <p>
+ * Signals are coalesced per (chat, user) for typing and per user for presence. A flush task publishes them
+ * in batches over the fan-out transport, only to nodes holding sessions of the chats' participants. A typing
+ * start is forwarded at most once per {@code ws.typing.refresh-ms}. Receivers drop it after
+ * {@code ws.typing.ttl-ms} unless it is refreshed, so nothing has to clean up after a client that vanishes
+ * mid-sentence. Presence goes to the user's most recently active chats (from the inbox cache, or MySQL for
+ * users without a cached inbox) and the status is stored in Redis for {@link #lookup}. Last-seen times are
+ * kept here and written to Redis in one batch every {@code ws.presence.last-seen-flush-ms}.
+ */
+@Component
+public class EphemeralRelay implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(EphemeralRelay.class);
+
+    public static final String ONLINE = "ONLINE";
+    public static final String AWAY = "AWAY";
+    public static final String OFFLINE = "OFFLINE";
+
+    private final WsFanoutPublisher fanoutPublisher;
+    private final RedisSessionService redisSessionService;
+    private final InboxCache inboxCache;
+    private final String nodeId;
+    private final long typingTtlMs;
+    private final long typingRefreshMs;
+    private final long typingFlushMs;
+    private final long presenceFlushMs;
+    private final long lastSeenFlushMs;
+    private final int presenceMaxChats;
+    private final int presenceMaxLoads;
+
+    /** When a typing start was last forwarded; absent once stopped or expired. */
+    private final Map<TypingKey, Long> typingSentAt = new ConcurrentHashMap<>();
+    private final Map<TypingKey, Boolean> pendingTyping = new ConcurrentHashMap<>();
+    private final Map<Long, String> pendingPresence = new ConcurrentHashMap<>();
+    /** Last status this node announced per user, so repeats are not published again. */
+    private final Map<Long, String> sentPresence = new ConcurrentHashMap<>();
+    private final Map<Long, Long> pendingLastSeen = new ConcurrentHashMap<>();
+
+    private final Counter typingForwarded;
+    private final Counter typingCoalesced;
+    private final Counter presencePublished;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public EphemeralRelay(WsFanoutPublisher fanoutPublisher,
+                          RedisSessionService redisSessionService,
+                          InboxCache inboxCache,
+                          @Value("${ws.node-id:node-1}") String nodeId,
+                          @Value("${ws.typing.ttl-ms:6000}") long typingTtlMs,
+                          @Value("${ws.typing.refresh-ms:3000}") long typingRefreshMs,
+                          @Value("${ws.typing.flush-interval-ms:250}") long typingFlushMs,
+                          @Value("${ws.presence.flush-interval-ms:1000}") long presenceFlushMs,
+                          @Value("${ws.presence.last-seen-flush-ms:30000}") long lastSeenFlushMs,
+                          @Value("${ws.presence.max-chats:50}") int presenceMaxChats,
+                          @Value("${ws.presence.max-loads-per-flush:200}") int presenceMaxLoads,
+                          MeterRegistry meterRegistry) {
+        this.fanoutPublisher = fanoutPublisher;
+        this.redisSessionService = redisSessionService;
+        this.inboxCache = inboxCache;
+        this.nodeId = nodeId;
+        this.typingTtlMs = typingTtlMs;
+        this.typingRefreshMs = typingRefreshMs;
+        this.typingFlushMs = typingFlushMs;
+        this.presenceFlushMs = presenceFlushMs;
+        this.lastSeenFlushMs = lastSeenFlushMs;
+        this.presenceMaxChats = presenceMaxChats;
+        this.presenceMaxLoads = presenceMaxLoads;
+
+        this.typingForwarded = typingCounter(meterRegistry, nodeId, "forwarded");
+        this.typingCoalesced = typingCounter(meterRegistry, nodeId, "coalesced");
+        this.presencePublished = Counter.builder("chat_ws_presence_published_total")
+                .description("Presence changes published to other nodes")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+    }
+
+    private static Counter typingCounter(MeterRegistry meterRegistry, String nodeId, String outcome) {
+        return Counter.builder("chat_ws_typing_signals_total")
+                .description("Inbound TYPING signals, by whether they were forwarded or absorbed on this node")
+                .tag("nodeId", nodeId)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a TYPING signal from a participant; membership is checked by the caller.
+     */
+    public void typing(long chatId, long userId, boolean typing) {
+        TypingKey key = new TypingKey(chatId, userId);
+        long now = System.currentTimeMillis();
+        touch(userId, now);
+
+        if (typing) {
+            Long sentAt = typingSentAt.get(key);
+            if (sentAt != null && now - sentAt < typingRefreshMs) {
+                typingCoalesced.increment();
+                return;
+            }
+            typingSentAt.put(key, now);
+        } else {
+            if (typingSentAt.remove(key) == null) {
+                typingCoalesced.increment();
+                return;
+            }
+            // started and stopped within one flush: nobody needs to hear about either
+            if (pendingTyping.remove(key, Boolean.TRUE)) {
+                typingCoalesced.increment();
+                return;
+            }
+        }
+        pendingTyping.put(key, typing);
+    }
+
+    /**
+     * A status the client reports itself ({@link #ONLINE} or {@link #AWAY}).
+     */
+    public void presence(long userId, String status) {
+        touch(userId, System.currentTimeMillis());
+        pendingPresence.put(userId, status);
+    }
+
+    public void onConnected(long userId, boolean firstLocalSession) {
+        touch(userId, System.currentTimeMillis());
+        if (firstLocalSession) {
+            pendingPresence.put(userId, ONLINE);
+        }
+    }
+
+    public void onDisconnected(long userId, boolean lastLocalSession) {
+        touch(userId, System.currentTimeMillis());
+        if (lastLocalSession) {
+            pendingPresence.put(userId, OFFLINE);
+        }
+    }
+
+    private void touch(long userId, long now) {
+        pendingLastSeen.merge(userId, now, Math::max);
+    }
+
+    /**
+     * Current presence of the given users: the status they last reported (ONLINE unless they said AWAY) if any
+     * node holds a session for them, else OFFLINE with the last-seen time. Status, last-seen and (empty) chat
+     * ids per user, in request order.
+     */
+    public List<PresenceFanoutEvent> lookup(Collection<Long> userIds) {
+        Map<Long, Set<String>> nodes = redisSessionService.findNodesForUsers(userIds);
+        List<Long> offline = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (!nodes.containsKey(userId)) {
+                offline.add(userId);
+            }
+        }
+        Map<Long, String> reported = redisSessionService.findStatus(nodes.keySet());
+        Map<Long, Long> lastSeen = new HashMap<>(redisSessionService.findLastSeen(offline));
+        for (Long userId : offline) {
+            // not flushed to Redis yet
+            Long local = pendingLastSeen.get(userId);
+            if (local != null) {
+                lastSeen.merge(userId, local, Math::max);
+            }
+        }
+
+        List<PresenceFanoutEvent> result = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            String status = nodes.containsKey(userId)
+                    ? reported.getOrDefault(userId, ONLINE)
+                    : OFFLINE;
+            result.add(new PresenceFanoutEvent(userId, status, lastSeen.get(userId), List.of()));
+        }
+        return result;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ws-ephemeral-"));
+        scheduler.scheduleWithFixedDelay(guarded(this::flushTyping, "typing"),
+                typingFlushMs, typingFlushMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(guarded(this::flushPresence, "presence"),
+                presenceFlushMs, presenceFlushMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(guarded(this::flushLastSeen, "last-seen"),
+                lastSeenFlushMs, lastSeenFlushMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // sessions closed during shutdown: tell the other nodes and keep their last-seen
+        guarded(this::flushPresence, "presence").run();
+        guarded(this::flushLastSeen, "last-seen").run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, like {@link RedisSessionService}, so disconnects during shutdown are flushed.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private Runnable guarded(Runnable task, String name) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Ephemeral {} flush failed", name, e);
+            }
+        };
+    }
+
+    private void flushTyping() {
+        long now = System.currentTimeMillis();
+        List<TypingFanoutEvent> events = new ArrayList<>();
+        for (TypingKey key : pendingTyping.keySet()) {
+            Boolean typing = pendingTyping.remove(key);
+            if (typing != null) {
+                events.add(new TypingFanoutEvent(key.chatId(), key.userId(), typing, now + typingTtlMs));
+            }
+        }
+        // receivers have expired these by now
+        typingSentAt.values().removeIf(sentAt -> now - sentAt >= typingTtlMs);
+
+        if (!events.isEmpty()) {
+            typingForwarded.increment(events.size());
+            fanoutPublisher.publishTyping(events);
+        }
+    }
+
+    private void flushPresence() {
+        Map<Long, String> changes = new HashMap<>();
+        for (Long userId : pendingPresence.keySet()) {
+            String status = pendingPresence.remove(userId);
+            if (status != null && !status.equals(sentPresence.getOrDefault(userId, OFFLINE))) {
+                changes.put(userId, status);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // a user whose last session here closed may still be connected to another node
+        List<Long> leaving = new ArrayList<>();
+        changes.forEach((userId, status) -> {
+            if (OFFLINE.equals(status)) {
+                leaving.add(userId);
+            }
+        });
+        if (!leaving.isEmpty()) {
+            redisSessionService.findNodesForUsers(leaving).forEach((userId, nodes) -> {
+                if (nodes.size() > 1 || !nodes.contains(nodeId)) {
+                    changes.remove(userId);
+                    sentPresence.remove(userId);
+                }
+            });
+        }
+
+        Map<Long, List<Long>> chatIds = inboxCache.recentChatIds(changes.keySet(), presenceMaxChats, presenceMaxLoads);
+        Map<Long, String> stored = new HashMap<>();
+        List<PresenceFanoutEvent> events = new ArrayList<>(changes.size());
+        changes.forEach((userId, status) -> {
+            List<Long> chats = chatIds.get(userId);
+            if (chats == null) {
+                // over this flush's MySQL budget; announce it next time unless a newer status comes first
+                pendingPresence.putIfAbsent(userId, status);
+                return;
+            }
+            if (OFFLINE.equals(status)) {
+                sentPresence.remove(userId);
+                stored.put(userId, null);
+            } else {
+                sentPresence.put(userId, status);
+                stored.put(userId, status);
+            }
+            if (!chats.isEmpty()) {
+                events.add(new PresenceFanoutEvent(userId, status,
+                        OFFLINE.equals(status) ? pendingLastSeen.getOrDefault(userId, System.currentTimeMillis()) : null,
+                        chats));
+            }
+        });
+
+        if (!events.isEmpty()) {
+            presencePublished.increment(events.size());
+            fanoutPublisher.publishPresence(events);
+        }
+        redisSessionService.saveStatus(stored);
+    }
+
+    private void flushLastSeen() {
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long userId : pendingLastSeen.keySet()) {
+            Long at = pendingLastSeen.remove(userId);
+            if (at != null) {
+                batch.put(userId, at);
+            }
+        }
+        redisSessionService.saveLastSeen(batch);
+    }
+
+    private record TypingKey(long chatId, long userId) {
+    }
+}
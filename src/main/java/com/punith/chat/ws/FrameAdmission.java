@@ -0,0 +1,231 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.ChatMessageProducer;
+import com.punith.chat.messaging.ReadReceiptProducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for inbound WebSocket frames.
+ * <p>
+ * Every session has a frame budget. Every user has separate budgets for SEND_MESSAGE and READ_MESSAGES,
+ * shared by all of their sessions on this node: they are kept per user id from the first {@link #open} until
+ * the matching {@link #close} of the last session, so concurrent connects cannot each start a fresh budget.
+ * Each budget is a GCRA token bucket: a single
+ * {@link AtomicLong} holding the theoretical arrival time, advanced by CAS, so an admitted frame takes no
+ * lock and allocates nothing. On top of that, Kafka-bound frames are shed node-wide while too many produce
+ * requests are waiting for broker acks or too many frames are queued for slow sockets.
+ */
+@Component
+public class FrameAdmission {
+
+    public enum Kind {
+        MESSAGE, READ, OTHER
+    }
+
+    public enum Rejection {
+        SESSION_RATE, USER_RATE, OVERLOADED
+    }
+
+    private final Gcra sessionFrames;
+    private final Gcra userMessages;
+    private final Gcra userReads;
+    private final int maxProduceInFlight;
+    private final long maxOutboundFrames;
+    private final ChatMessageProducer messageProducer;
+    private final ReadReceiptProducer readReceiptProducer;
+    private final WsOutboundDispatcher outboundDispatcher;
+    private final ConcurrentHashMap<Long, UserBudgets> users = new ConcurrentHashMap<>();
+
+    /** Indexed by [rejection][kind], so counting a rejection needs no tag lookup. */
+    private final Counter[][] rejected = new Counter[Rejection.values().length][Kind.values().length];
+
+    public FrameAdmission(@Value("${ws.limits.session.frames-per-second:30}") double sessionFramesPerSecond,
+                          @Value("${ws.limits.session.burst:60}") int sessionBurst,
+                          @Value("${ws.limits.user.messages-per-second:10}") double userMessagesPerSecond,
+                          @Value("${ws.limits.user.message-burst:30}") int userMessageBurst,
+                          @Value("${ws.limits.user.reads-per-second:20}") double userReadsPerSecond,
+                          @Value("${ws.limits.user.read-burst:50}") int userReadBurst,
+                          @Value("${ws.admission.max-produce-in-flight:20000}") int maxProduceInFlight,
+                          @Value("${ws.admission.max-outbound-frames:500000}") long maxOutboundFrames,
+                          ChatMessageProducer messageProducer,
+                          ReadReceiptProducer readReceiptProducer,
+                          WsOutboundDispatcher outboundDispatcher,
+                          @Value("${ws.node-id:node-1}") String nodeId,
+                          MeterRegistry meterRegistry) {
+        this.sessionFrames = new Gcra(sessionFramesPerSecond, sessionBurst);
+        this.userMessages = new Gcra(userMessagesPerSecond, userMessageBurst);
+        this.userReads = new Gcra(userReadsPerSecond, userReadBurst);
+        this.maxProduceInFlight = maxProduceInFlight;
+        this.maxOutboundFrames = maxOutboundFrames;
+        this.messageProducer = messageProducer;
+        this.readReceiptProducer = readReceiptProducer;
+        this.outboundDispatcher = outboundDispatcher;
+
+        for (Rejection rejection : Rejection.values()) {
+            for (Kind kind : Kind.values()) {
+                rejected[rejection.ordinal()][kind.ordinal()] = Counter.builder("chat_ws_frames_rejected_total")
+                        .description("Inbound WebSocket frames refused by rate limits or node admission control")
+                        .tag("nodeId", nodeId)
+                        .tag("reason", rejection.name().toLowerCase(Locale.ROOT))
+                        .tag("kind", kind.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Budgets for a new session of {@code userId}, sharing the per-user budgets of the user's other sessions on
+     * this node. Every call must be paired with one {@link #close}.
+     */
+    public Budgets open(long userId) {
+        UserBudgets user = users.compute(userId, (id, existing) -> {
+            UserBudgets budgets = existing != null ? existing : new UserBudgets();
+            budgets.sessions++;
+            return budgets;
+        });
+        return new Budgets(userId, user);
+    }
+
+    /**
+     * Releases a session's budgets; the per-user budgets go with the user's last session.
+     */
+    public void close(Budgets budgets) {
+        users.computeIfPresent(budgets.userId, (id, user) -> --user.sessions == 0 ? null : user);
+    }
+
+    int userCount() {
+        return users.size();
+    }
+
+    public static Kind kindOf(String type) {
+        return switch (type) {
+            case "SEND_MESSAGE" -> Kind.MESSAGE;
+            case "READ_MESSAGES" -> Kind.READ;
+            default -> Kind.OTHER;
+        };
+    }
+
+    /**
+     * Charges one frame to the session, before it is parsed. Returns null if admitted.
+     */
+    public Rejection admitFrame(Budgets budgets) {
+        if (sessionFrames.tryAcquire(budgets.frames, System.nanoTime())) {
+            return null;
+        }
+        rejected[Rejection.SESSION_RATE.ordinal()][Kind.OTHER.ordinal()].increment();
+        return Rejection.SESSION_RATE;
+    }
+
+    /**
+     * Checks node load and charges the user's budget for a parsed frame of the given kind. Returns null if
+     * admitted.
+     */
+    public Rejection admit(Budgets budgets, Kind kind) {
+        Rejection rejection = check(budgets, kind);
+        if (rejection != null) {
+            rejected[rejection.ordinal()][kind.ordinal()].increment();
+        }
+        return rejection;
+    }
+
+    private Rejection check(Budgets budgets, Kind kind) {
+        if (kind == Kind.OTHER) {
+            return null;
+        }
+        if (overloaded()) {
+            return Rejection.OVERLOADED;
+        }
+        long now = System.nanoTime();
+        boolean admitted = kind == Kind.MESSAGE
+                ? userMessages.tryAcquire(budgets.user.messages, now)
+                : userReads.tryAcquire(budgets.user.reads, now);
+        return admitted ? null : Rejection.USER_RATE;
+    }
+
+    private boolean overloaded() {
+        return messageProducer.inFlight() + readReceiptProducer.inFlight() >= maxProduceInFlight
+                || outboundDispatcher.queuedFrames() >= maxOutboundFrames;
+    }
+
+    /**
+     * How long the client should wait before the rejected frame would be admitted; 0 when that is unknown
+     * (overload).
+     */
+    public long retryAfterMillis(Budgets budgets, Kind kind, Rejection rejection) {
+        long now = System.nanoTime();
+        long nanos = switch (rejection) {
+            case SESSION_RATE -> sessionFrames.retryAfterNanos(budgets.frames, now);
+            case USER_RATE -> kind == Kind.MESSAGE
+                    ? userMessages.retryAfterNanos(budgets.user.messages, now)
+                    : userReads.retryAfterNanos(budgets.user.reads, now);
+            case OVERLOADED -> 0;
+        };
+        return TimeUnit.NANOSECONDS.toMillis(nanos + 999_999);
+    }
+
+    public static final class Budgets {
+        private final AtomicLong frames = Gcra.newBucket();
+        private final long userId;
+        private final UserBudgets user;
+
+        private Budgets(long userId, UserBudgets user) {
+            this.userId = userId;
+            this.user = user;
+        }
+    }
+
+    private static final class UserBudgets {
+        private final AtomicLong messages = Gcra.newBucket();
+        private final AtomicLong reads = Gcra.newBucket();
+        /** Open sessions; only changed inside {@link ConcurrentHashMap#compute}. */
+        private int sessions;
+    }
+
+    /**
+     * Generic cell rate algorithm: a bucket is just its theoretical arrival time (TAT). A request is admitted
+     * if pushing the TAT one emission interval forward keeps it within {@code burst} intervals of now.
+     */
+    static final class Gcra {
+
+        private final long emissionNanos;
+        private final long toleranceNanos;
+
+        Gcra(double perSecond, int burst) {
+            this.emissionNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+            this.toleranceNanos = emissionNanos * Math.max(1, burst);
+        }
+
+        static AtomicLong newBucket() {
+            // System.nanoTime() may be negative; anything below it means "full bucket"
+            return new AtomicLong(Long.MIN_VALUE);
+        }
+
+        boolean tryAcquire(AtomicLong tat, long now) {
+            if (emissionNanos == 0) {
+                return true;
+            }
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + emissionNanos;
+                if (next - now > toleranceNanos) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        long retryAfterNanos(AtomicLong tat, long now) {
+            return Math.max(0, Math.max(tat.get(), now) + emissionNanos - now - toleranceNanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.punith.chat.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.ws.ChatWebSocketHandler.WsOutboundWrapper;
+import org.springframework.web.socket.TextMessage;
+
+/**
+ * An outbound event encoded once and shared by every recipient session.
+ * The JSON is written straight to UTF-8 bytes and {@link TextMessage} keeps those bytes,
+ * so fan-out to N sessions costs one serialization instead of N.
+ * Frames with the same non-null {@code coalesceKey} supersede each other in a backed-up session queue.
+ * {@code acceptedAtMillis} is the WS ingress time of the message behind the frame (0 if none), for end-to-end latency.
+ * A {@code reply} answers the session's own request (acks, sync results, errors) and is never dropped to make room.
+ */
+public record OutboundFrame(
+        String type,
+        TextMessage message,
+        String coalesceKey,
+        long acceptedAtMillis,
+        boolean reply
+) {
+
+    public static OutboundFrame reply(TextMessage message) {
+        return new OutboundFrame(null, message, null, 0L, true);
+    }
+
+    public static OutboundFrame encode(ObjectMapper objectMapper, String type, Object payload)
+            throws JsonProcessingException {
+        return encode(objectMapper, type, payload, null);
+    }
+
+    public static OutboundFrame encode(ObjectMapper objectMapper, String type, Object payload, String coalesceKey)
+            throws JsonProcessingException {
+        return encode(objectMapper, type, payload, coalesceKey, 0L);
+    }
+
+    public static OutboundFrame encode(ObjectMapper objectMapper, String type, Object payload, String coalesceKey,
+                                       long acceptedAtMillis)
+            throws JsonProcessingException {
+        byte[] json = objectMapper.writeValueAsBytes(new WsOutboundWrapper<>(type, payload));
+        return new OutboundFrame(type, new TextMessage(json), coalesceKey, acceptedAtMillis, false);
+    }
+}
@@ -0,0 +1,241 @@
+package com.punith.chat.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A WebSocket session behind a bounded asynchronous send queue.
+ * Producers (Redis fan-out, Kafka callbacks, request threads) only enqueue; a single drain task at a time
+ * writes to the socket on the dispatcher's executor, so sends to one session are serialized and a slow
+ * client never blocks the thread that produced the frame.
+ * <p>
+ * A write that is still blocked after the send time limit is cut off by the dispatcher's watchdog, which
+ * closes the session so the drain thread is released. Replies to the client's own requests are never dropped
+ * by the overflow policy; a queue holding nothing but replies means the client has stopped reading and the
+ * session is closed instead.
+ */
+public final class OutboundSession {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundSession.class);
+
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    private final WebSocketSession session;
+    private final WsOutboundDispatcher dispatcher;
+
+    private final ConcurrentLinkedDeque<OutboundFrame> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /** When the socket write in progress must have finished; 0 while no write is in progress. */
+    private volatile long sendDeadline;
+
+    OutboundSession(WebSocketSession session, WsOutboundDispatcher dispatcher) {
+        this.session = session;
+        this.dispatcher = dispatcher;
+    }
+
+    public WebSocketSession session() {
+        return session;
+    }
+
+    public String getId() {
+        return session.getId();
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    /**
+     * Queues a frame for delivery. Returns false if the session is closed or the frame was rejected
+     * by the overflow policy.
+     */
+    public boolean enqueue(OutboundFrame frame) {
+        if (closed.get() || !session.isOpen()) {
+            return false;
+        }
+
+        if (depth.get() >= dispatcher.bufferSize() && !makeRoom(frame)) {
+            return false;
+        }
+
+        queue.offer(frame);
+        depth.incrementAndGet();
+        dispatcher.onQueued();
+        scheduleDrain();
+        return true;
+    }
+
+    private boolean makeRoom(OutboundFrame incoming) {
+        switch (dispatcher.overflowPolicy()) {
+            case DISCONNECT -> {
+                dispatcher.onSlowConsumerDisconnect();
+                close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound buffer overflow"));
+                return false;
+            }
+            case COALESCE -> {
+                if (incoming.coalesceKey() != null && removeSuperseded(incoming.coalesceKey())) {
+                    dispatcher.onDropped(true);
+                    return true;
+                }
+                return dropOldest();
+            }
+            default -> {
+                return dropOldest();
+            }
+        }
+    }
+
+    private boolean removeSuperseded(String coalesceKey) {
+        Iterator<OutboundFrame> it = queue.iterator();
+        while (it.hasNext()) {
+            OutboundFrame queued = it.next();
+            if (Objects.equals(coalesceKey, queued.coalesceKey()) && queue.removeFirstOccurrence(queued)) {
+                depth.decrementAndGet();
+                dispatcher.onDequeued();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean dropOldest() {
+        for (OutboundFrame queued : queue) {
+            if (!queued.reply() && queue.removeFirstOccurrence(queued)) {
+                depth.decrementAndGet();
+                dispatcher.onDequeued();
+                dispatcher.onDropped(false);
+                return true;
+            }
+        }
+        if (queue.isEmpty()) {
+            // drained concurrently
+            return true;
+        }
+        dispatcher.onSlowConsumerDisconnect();
+        close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound buffer overflow"));
+        return false;
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.executor().execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            log.warn("Outbound executor rejected drain for session {}", session.getId());
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_FRAMES_PER_DRAIN; i++) {
+                OutboundFrame frame = queue.poll();
+                if (frame == null) {
+                    break;
+                }
+                depth.decrementAndGet();
+                dispatcher.onDequeued();
+
+                if (!send(frame)) {
+                    return;
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // either the burst limit was hit or a producer enqueued after our last poll
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private boolean send(OutboundFrame frame) {
+        if (!session.isOpen()) {
+            discardQueued();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        sendDeadline = start + dispatcher.sendTimeLimitNanos();
+        try {
+            session.sendMessage(frame.message());
+        } catch (IOException | IllegalStateException e) {
+            if (closed.get()) {
+                log.debug("WS send to session {} ended by close", session.getId(), e);
+            } else {
+                log.warn("Failed to send WS message to session {}", session.getId(), e);
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+            return false;
+        } finally {
+            sendDeadline = 0;
+        }
+
+        dispatcher.onSent(frame, System.nanoTime() - start);
+        return !closed.get();
+    }
+
+    /**
+     * Called by the dispatcher's watchdog: closes the session if a socket write has been blocked past the send
+     * time limit, which fails the write and frees the drain thread.
+     */
+    void checkSendDeadline(long now) {
+        long deadline = sendDeadline;
+        if (deadline == 0 || now - deadline < 0 || closed.get()) {
+            return;
+        }
+        log.warn("Closing slow WS session {}: send exceeded {} ms",
+                session.getId(), dispatcher.sendTimeLimitNanos() / 1_000_000);
+        dispatcher.onSlowConsumerDisconnect();
+        close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time limit exceeded"));
+    }
+
+    /**
+     * Closes the underlying session (if still open) and discards anything still queued.
+     */
+    public void close(CloseStatus status) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        dispatcher.onClosed(this);
+        discardQueued();
+        if (session.isOpen()) {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                log.debug("Error closing WS session {}", session.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Marks the queue closed after the session was closed elsewhere.
+     */
+    void release() {
+        closed.set(true);
+        dispatcher.onClosed(this);
+        discardQueued();
+    }
+
+    private void discardQueued() {
+        while (queue.poll() != null) {
+            depth.decrementAndGet();
+            dispatcher.onDequeued();
+        }
+    }
+}
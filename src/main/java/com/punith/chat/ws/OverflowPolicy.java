@@ -0,0 +1,16 @@
+package com.punith.chat.ws;
+
+/**
+ * What a session's outbound queue does when a new frame arrives and the buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /** Discard the oldest queued frame to make room. */
+    DROP_OLDEST,
+
+    /** Replace a queued frame superseded by the new one (same coalesce key), else drop the oldest. */
+    COALESCE,
+
+    /** Close the session; the client reconnects and resyncs. */
+    DISCONNECT
+}
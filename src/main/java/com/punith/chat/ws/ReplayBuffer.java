@@ -0,0 +1,176 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The most recent NEW_MESSAGE events of each chat this node has fanned out, so reconnecting clients can
+ * catch up from memory. Each chat keeps a ring of up to {@code ws.replay.per-chat} events with contiguous
+ * seqs (a gap in what this node received resets the ring), and at most {@code ws.replay.max-chats} chats
+ * are kept, evicted by sampled LRU.
+ */
+@Component
+public class ReplayBuffer {
+
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private final int perChat;
+    private final int maxChats;
+    private final ConcurrentHashMap<Long, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public ReplayBuffer(@Value("${ws.replay.per-chat:128}") int perChat,
+                        @Value("${ws.replay.max-chats:10000}") int maxChats,
+                        MeterRegistry meterRegistry) {
+        this.perChat = perChat;
+        this.maxChats = maxChats;
+
+        this.hitCounter = Counter.builder("chat_ws_replay_hits_total")
+                .description("Catch-up requests served from the in-memory replay buffer")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat_ws_replay_misses_total")
+                .description("Catch-up requests the replay buffer could not cover and that went to the database")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("chat_ws_replay_evictions_total")
+                .description("Chats evicted from the replay buffer to stay within its size bound")
+                .register(meterRegistry);
+        Gauge.builder("chat_ws_replay_chats", rings, Map::size)
+                .description("Chats with a replay ring on this node")
+                .register(meterRegistry);
+        Gauge.builder("chat_ws_replay_events", this, ReplayBuffer::bufferedEvents)
+                .description("NEW_MESSAGE events held in replay rings on this node")
+                .register(meterRegistry);
+    }
+
+    public void append(NewMessageFanoutEvent event) {
+        if (perChat <= 0 || event.seq() == null) {
+            return;
+        }
+        Ring ring = rings.get(event.chatId());
+        if (ring == null) {
+            ring = rings.computeIfAbsent(event.chatId(), id -> new Ring(perChat));
+            if (rings.size() > maxChats) {
+                evictOne();
+            }
+        }
+        ring.lastAccess = clock.incrementAndGet();
+        ring.append(event);
+    }
+
+    /**
+     * Up to {@code limit} events of the chat after {@code afterSeq}, oldest first, plus one extra if more follow;
+     * or null if the ring cannot answer. That is the case when it does not reach back to {@code afterSeq + 1},
+     * or when it would answer up to its newest event but {@code currentLastSeq} shows newer ones. This node
+     * stops receiving a chat's events while none of its participants are connected here.
+     */
+    public List<NewMessageFanoutEvent> since(long chatId, long afterSeq, int limit, LongSupplier currentLastSeq) {
+        Ring ring = rings.get(chatId);
+        List<NewMessageFanoutEvent> events = ring != null ? ring.since(afterSeq, limit + 1) : null;
+        if (events != null && events.size() <= limit) {
+            long ringLast = events.isEmpty() ? afterSeq : events.get(events.size() - 1).seq();
+            if (currentLastSeq.getAsLong() > ringLast) {
+                events = null;
+            }
+        }
+        if (events == null) {
+            missCounter.increment();
+        } else {
+            ring.lastAccess = clock.incrementAndGet();
+            hitCounter.increment();
+        }
+        return events;
+    }
+
+    private long bufferedEvents() {
+        long total = 0;
+        for (Ring ring : rings.values()) {
+            total += ring.size;
+        }
+        return total;
+    }
+
+    private void evictOne() {
+        Long victim = null;
+        long oldest = Long.MAX_VALUE;
+        Iterator<Map.Entry<Long, Ring>> it = rings.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && it.hasNext(); i++) {
+            Map.Entry<Long, Ring> candidate = it.next();
+            if (candidate.getValue().lastAccess < oldest) {
+                oldest = candidate.getValue().lastAccess;
+                victim = candidate.getKey();
+            }
+        }
+        if (victim != null && rings.remove(victim) != null) {
+            evictionCounter.increment();
+        }
+    }
+
+    private static final class Ring {
+        private final NewMessageFanoutEvent[] events;
+        private int head;
+        private volatile int size;
+        volatile long lastAccess;
+
+        Ring(int capacity) {
+            this.events = new NewMessageFanoutEvent[capacity];
+        }
+
+        synchronized void append(NewMessageFanoutEvent event) {
+            if (size > 0) {
+                long last = events[(head + size - 1) % events.length].seq();
+                if (event.seq() <= last) {
+                    return;
+                }
+                if (event.seq() != last + 1) {
+                    // this node missed something in between; only a contiguous run can answer "since X"
+                    head = 0;
+                    size = 0;
+                }
+            }
+            if (size == events.length) {
+                events[head] = event;
+                head = (head + 1) % events.length;
+            } else {
+                events[(head + size) % events.length] = event;
+                size++;
+            }
+        }
+
+        synchronized List<NewMessageFanoutEvent> since(long afterSeq, int max) {
+            if (size == 0) {
+                return null;
+            }
+            long first = events[head].seq();
+            long last = events[(head + size - 1) % events.length].seq();
+            if (afterSeq + 1 < first) {
+                return null;
+            }
+            if (afterSeq >= last) {
+                return List.of();
+            }
+            int offset = (int) (afterSeq + 1 - first);
+            int count = Math.min(size - offset, max);
+            List<NewMessageFanoutEvent> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(events[(head + offset + i) % events.length]);
+            }
+            return result;
+        }
+    }
+}
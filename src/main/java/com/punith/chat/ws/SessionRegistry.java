@@ -0,0 +1,313 @@
+package com.punith.chat.ws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * This node's WebSocket sessions by userId.
+ * <p>
+ * Users are spread over {@value #STRIPES} stripes. Each stripe is an open-addressing table with primitive
+ * {@code long} keys, so there are no boxed keys or per-entry nodes. Each user maps to a small immutable
+ * {@code OutboundSession[]}, replaced on connect and disconnect. Lookups are optimistic {@link StampedLock}
+ * reads and take no lock unless they race with a write to the same stripe. Writes lock one stripe, so adding
+ * or removing a user's session and learning whether it was their first or last is one atomic step. Session
+ * and user counts are kept as counters rather than computed on every metrics scrape.
+ */
+@Component
+public class SessionRegistry {
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+    private static final OutboundSession[] NONE = new OutboundSession[0];
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final AtomicInteger userCount = new AtomicInteger();
+
+    public SessionRegistry(@Value("${ws.sessions.expected-users:65536}") int expectedUsers) {
+        int perStripe = Math.max(16, Integer.highestOneBit(Math.max(1, expectedUsers / STRIPES) * 2 - 1) * 2);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Registers a session; returns true if it is the user's first on this node.
+     */
+    public boolean add(long userId, OutboundSession session) {
+        long hash = spread(userId);
+        int before = stripe(hash).add(userId, hash, session);
+        if (before < 0) {
+            return false;
+        }
+        sessionCount.incrementAndGet();
+        if (before == 0) {
+            userCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unregisters a session; returns true if the user has no sessions left on this node.
+     */
+    public boolean remove(long userId, OutboundSession session) {
+        long hash = spread(userId);
+        if (session == null) {
+            return stripe(hash).get(userId, hash).length == 0;
+        }
+        int after = stripe(hash).remove(userId, hash, session);
+        if (after < 0) {
+            return stripe(hash).get(userId, hash).length == 0;
+        }
+        sessionCount.decrementAndGet();
+        if (after == 0) {
+            userCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The user's sessions on this node, possibly empty. The array is shared and must not be modified.
+     */
+    public OutboundSession[] sessions(long userId) {
+        long hash = spread(userId);
+        return stripe(hash).get(userId, hash);
+    }
+
+    /**
+     * Fan-out lookup: runs {@code action} for every local session of the given users.
+     */
+    public void forEachSession(long[] userIds, Consumer<OutboundSession> action) {
+        for (long userId : userIds) {
+            long hash = spread(userId);
+            for (OutboundSession session : stripe(hash).get(userId, hash)) {
+                action.accept(session);
+            }
+        }
+    }
+
+    /**
+     * Visits every registered session. Each stripe is read under its read lock, so {@code action} must not
+     * call back into the registry.
+     */
+    public void forEach(BiConsumer<Long, OutboundSession> action) {
+        for (Stripe stripe : stripes) {
+            stripe.forEach(action);
+        }
+    }
+
+    public int sessionCount() {
+        return sessionCount.get();
+    }
+
+    public int userCount() {
+        return userCount.get();
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[(int) (hash >>> STRIPE_SHIFT)];
+    }
+
+    private static long spread(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+        private long[] keys;
+        private OutboundSession[][] values;
+        private int size;
+
+        Stripe(int capacity) {
+            keys = new long[capacity];
+            values = new OutboundSession[capacity][];
+        }
+
+        OutboundSession[] get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            OutboundSession[] found = find(keys, values, key, hash);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    found = find(keys, values, key, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found;
+        }
+
+        void forEach(BiConsumer<Long, OutboundSession> action) {
+            long stamp = lock.readLock();
+            try {
+                for (int i = 0; i < keys.length; i++) {
+                    if (values[i] != null) {
+                        for (OutboundSession session : values[i]) {
+                            action.accept(keys[i], session);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /** Returns the user's session count before the add, or -1 if the session was already registered. */
+        int add(long key, long hash, OutboundSession session) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(key, hash);
+                if (slot >= 0) {
+                    OutboundSession[] current = values[slot];
+                    for (OutboundSession existing : current) {
+                        if (existing == session) {
+                            return -1;
+                        }
+                    }
+                    OutboundSession[] updated = Arrays.copyOf(current, current.length + 1);
+                    updated[current.length] = session;
+                    values[slot] = updated;
+                    return current.length;
+                }
+
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize();
+                }
+                int mask = keys.length - 1;
+                int i = (int) hash & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = new OutboundSession[]{session};
+                size++;
+                return 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /** Returns the user's session count after the removal, or -1 if the session was not registered. */
+        int remove(long key, long hash, OutboundSession session) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(key, hash);
+                if (slot < 0) {
+                    return -1;
+                }
+                OutboundSession[] current = values[slot];
+                int index = -1;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == session) {
+                        index = i;
+                        break;
+                    }
+                }
+                if (index < 0) {
+                    return -1;
+                }
+                if (current.length == 1) {
+                    deleteSlot(slot);
+                    size--;
+                    return 0;
+                }
+                OutboundSession[] updated = new OutboundSession[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+                values[slot] = updated;
+                return updated.length;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Linear probe over the given arrays. Optimistic readers pass in whatever they read and may see a
+         * half-done write; {@link StampedLock#validate} then makes them retry under the read lock.
+         */
+        private static OutboundSession[] find(long[] keys, OutboundSession[][] values, long key, long hash) {
+            if (keys.length != values.length) {
+                return NONE;
+            }
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                OutboundSession[] slot = values[i];
+                if (slot == null) {
+                    return NONE;
+                }
+                if (keys[i] == key) {
+                    return slot;
+                }
+                i = (i + 1) & mask;
+            }
+            return NONE;
+        }
+
+        private int slotOf(long key, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /** Backward-shift deletion, so probe chains never contain holes and no tombstones are needed. */
+        private void deleteSlot(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int i = slot;
+            while (true) {
+                i = (i + 1) & mask;
+                if (values[i] == null) {
+                    break;
+                }
+                int home = (int) spread(keys[i]) & mask;
+                boolean homeInRange = hole <= i
+                        ? home > hole && home <= i
+                        : home > hole || home <= i;
+                if (!homeInRange) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            OutboundSession[][] oldValues = values;
+            long[] newKeys = new long[oldKeys.length * 2];
+            OutboundSession[][] newValues = new OutboundSession[oldKeys.length * 2][];
+            int mask = newKeys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = (int) spread(oldKeys[j]) & mask;
+                    while (newValues[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    newKeys[i] = oldKeys[j];
+                    newValues[i] = oldValues[j];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,8 @@ import java.util.Map;
 @Component
 public class UserHandshakeInterceptor implements HandshakeInterceptor {
 
+    static final String RESUME_ATTRIBUTE = "resume";
+
     @Override
     public boolean beforeHandshake(ServerHttpRequest request,
                                    ServerHttpResponse response,
@@ -23,6 +26,17 @@ public class UserHandshakeInterceptor implements HandshakeInterceptor {
             attributes.put("X-User-Id", values.get(0));
         }
 
+        // chatId:seq pairs a reconnecting client has already seen; see ChatWebSocketHandler#resume
+        List<String> resume = request.getHeaders().get("X-Resume");
+        if (resume != null && !resume.isEmpty()) {
+            attributes.put(RESUME_ATTRIBUTE, resume.get(0));
+        } else {
+            String query = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("resume");
+            if (query != null) {
+                attributes.put(RESUME_ATTRIBUTE, query);
+            }
+        }
+
 
 
         return true;
@@ -1,56 +1,94 @@
 package com.punith.chat.ws;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
 import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MembershipChangedFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.PresenceFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.TypingFanoutEvent;
+import com.punith.chat.messaging.FanoutChannels;
+import com.punith.chat.messaging.MessageLatencyMetrics;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.service.ParticipantDirectory;
 
 @Service
 public class WsFanoutSubscriber implements MessageListener {
 
     private static final Logger log = LoggerFactory.getLogger(WsFanoutSubscriber.class);
 
-    private final ObjectMapper objectMapper;
+    private final EventCodec eventCodec;
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ParticipantDirectory participantDirectory;
+    private final MessageLatencyMetrics latencyMetrics;
+    private final ReplayBuffer replayBuffer;
+    private final String newMessagesChannel;
+    private final String readReceiptsChannel;
+    private final String messageStatusChannel;
+    private final String typingChannel;
+    private final String presenceChannel;
 
-    public WsFanoutSubscriber(ObjectMapper objectMapper,
-                              ChatWebSocketHandler chatWebSocketHandler) {
-        this.objectMapper = objectMapper;
+    public WsFanoutSubscriber(EventCodec eventCodec,
+                              ChatWebSocketHandler chatWebSocketHandler,
+                              ParticipantDirectory participantDirectory,
+                              MessageLatencyMetrics latencyMetrics,
+                              ReplayBuffer replayBuffer,
+                              @Value("${ws.node-id:node-1}") String nodeId) {
+        this.eventCodec = eventCodec;
         this.chatWebSocketHandler = chatWebSocketHandler;
+        this.participantDirectory = participantDirectory;
+        this.latencyMetrics = latencyMetrics;
+        this.replayBuffer = replayBuffer;
+        this.newMessagesChannel = FanoutChannels.newMessages(nodeId);
+        this.readReceiptsChannel = FanoutChannels.readReceipts(nodeId);
+        this.messageStatusChannel = FanoutChannels.messageStatus(nodeId);
+        this.typingChannel = FanoutChannels.typing(nodeId);
+        this.presenceChannel = FanoutChannels.presence(nodeId);
     }
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
         String channel = new String(message.getChannel());
-        String body = new String(message.getBody());
+        byte[] body = message.getBody();
 
         try {
-            switch (channel) {
-                case "ws.fanout.messages" -> {
-                    NewMessageFanoutEvent event =
-                            objectMapper.readValue(body, NewMessageFanoutEvent.class);
-                    chatWebSocketHandler.broadcastNewMessageFanout(event);
-                }
-                case "ws.fanout.read-receipts" -> {
-                    ReadReceiptFanoutEvent event =
-                            objectMapper.readValue(body, ReadReceiptFanoutEvent.class);
-                    chatWebSocketHandler.broadcastReadReceiptFanout(event);
-                }
-                // 🔹 NEW
-                case "ws.fanout.message-status" -> {
-                    MessageStatusFanoutEvent event =
-                            objectMapper.readValue(body, MessageStatusFanoutEvent.class);
-                    chatWebSocketHandler.broadcastMessageStatusFanout(event);
-                }
-                default -> log.warn("Received message for unknown channel: {}", channel);
+            if (channel.equals(newMessagesChannel)) {
+                NewMessageFanoutEvent event =
+                        eventCodec.decode(body, NewMessageFanoutEvent.class);
+                latencyMetrics.recordSince(MessageLatencyMetrics.Stage.FANOUT_RECEIVE, event.publishedAtMillis());
+                replayBuffer.append(event);
+                chatWebSocketHandler.broadcastNewMessageFanout(event);
+            } else if (channel.equals(readReceiptsChannel)) {
+                ReadReceiptFanoutEvent event =
+                        eventCodec.decode(body, ReadReceiptFanoutEvent.class);
+                chatWebSocketHandler.broadcastReadReceiptFanout(event);
+            } else if (channel.equals(messageStatusChannel)) {
+                MessageStatusFanoutEvent event =
+                        eventCodec.decode(body, MessageStatusFanoutEvent.class);
+                chatWebSocketHandler.broadcastMessageStatusFanout(event);
+            } else if (channel.equals(typingChannel)) {
+                TypingFanoutEvent event =
+                        eventCodec.decode(body, TypingFanoutEvent.class);
+                chatWebSocketHandler.broadcastTypingFanout(event);
+            } else if (channel.equals(presenceChannel)) {
+                PresenceFanoutEvent event =
+                        eventCodec.decode(body, PresenceFanoutEvent.class);
+                chatWebSocketHandler.broadcastPresenceFanout(event);
+            } else if (channel.equals(FanoutChannels.MEMBERSHIP)) {
+                MembershipChangedFanoutEvent event =
+                        eventCodec.decode(body, MembershipChangedFanoutEvent.class);
+                participantDirectory.invalidate(event.chatId());
+            } else {
+                log.warn("Received message for unknown channel: {}", channel);
             }
         } catch (Exception e) {
-            log.error("Failed to handle fanout message from channel={}, body={}", channel, body, e);
+            log.error("Failed to handle fanout message from channel={}, body={}",
+                    channel, EventCodec.describe(body), e);
         }
     }
 
@@ -0,0 +1,123 @@
+package com.punith.chat.ws;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads an inbound frame in one pass with Jackson's streaming parser, without data binding: numbers go
+ * straight into primitive fields and id arrays into {@code long[]}. The message body is never turned into a
+ * String. The parser validates its UTF-8 while scanning past it, and the message then points at that slice of
+ * the frame, which {@link com.punith.chat.messaging.ChatMessageProducer} copies into the Kafka record as is.
+ * Unknown fields are skipped.
+ */
+@Component
+public class WsInboundDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    public WsInboundDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public WsInboundMessage decode(byte[] frame) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(frame)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+
+            WsInboundMessage message = new WsInboundMessage();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "type" -> message.type = parser.getText();
+                    case "chatId" -> message.chatId = readLong(parser);
+                    case "body" -> readBody(parser, frame, message);
+                    case "clientMessageId" -> message.clientMessageId = parser.getText();
+                    case "messageIds" -> message.messageIds = readIds(parser);
+                    case "upToMessageId" -> message.upToMessageId = readLong(parser);
+                    case "afterSeq" -> message.afterSeq = readLong(parser);
+                    case "limit" -> message.limit = (int) Math.min(Integer.MAX_VALUE, Math.max(0, readLong(parser)));
+                    case "typing" -> message.typing = parser.getValueAsBoolean(true);
+                    case "status" -> message.status = parser.getText();
+                    case "userIds" -> message.userIds = readIds(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Numbers, plus numeric strings for clients that send ids quoted.
+     */
+    private static long readLong(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(parser, "Expected a number for " + parser.currentName(), e);
+            }
+        }
+        throw new JsonParseException(parser, "Expected a number for " + parser.currentName());
+    }
+
+    private static long[] readIds(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array for " + parser.currentName());
+        }
+        long[] ids = new long[8];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = readLong(parser);
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    private static void readBody(JsonParser parser, byte[] frame, WsInboundMessage message) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected a string for body");
+        }
+        // token location is the opening quote; finishing the token moves past the closing one
+        int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+        parser.finishToken();
+        int end = (int) parser.currentLocation().getByteOffset() - 1;
+
+        if (start > 0 && end >= start && indexOf(frame, (byte) '\\', start, end) < 0) {
+            message.body = frame;
+            message.bodyOffset = start;
+            message.bodyLength = end - start;
+        } else {
+            // escapes: the raw bytes are not the text, so take the parser's unescaped value
+            byte[] unescaped = parser.getText().getBytes(StandardCharsets.UTF_8);
+            message.body = unescaped;
+            message.bodyOffset = 0;
+            message.bodyLength = unescaped.length;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,14 +1,47 @@
 package com.punith.chat.ws;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+/**
+ * One decoded inbound frame, filled by {@link WsInboundDecoder}. Ids are primitives ({@link #ABSENT} when the
+ * field was missing or null), id lists are {@code long[]}, and a SEND_MESSAGE body stays as the UTF-8 bytes
+ * it arrived in.
+ */
+public class WsInboundMessage {
 
-import java.util.List;
+    public static final long ABSENT = Long.MIN_VALUE;
 
-@JsonIgnoreProperties(ignoreUnknown = true)
-public class WsInboundMessage {
     public String type;
-    public Long chatId;
-    public String body;
+    public long chatId = ABSENT;
     public String clientMessageId;
-    public List<Long> messageIds;
+    public long[] messageIds;
+    public long upToMessageId = ABSENT;
+    public long afterSeq = ABSENT;
+    /** 0 when not given. */
+    public int limit;
+    public boolean typing = true;
+    public String status;
+    public long[] userIds;
+
+    byte[] body;
+    int bodyOffset;
+    int bodyLength;
+
+    public boolean hasBody() {
+        return body != null;
+    }
+
+    /**
+     * The body's UTF-8 bytes are {@code body()[bodyOffset() .. bodyOffset() + bodyLength())}; usually a slice of
+     * the frame itself, so do not modify.
+     */
+    public byte[] body() {
+        return body;
+    }
+
+    public int bodyOffset() {
+        return bodyOffset;
+    }
+
+    public int bodyLength() {
+        return bodyLength;
+    }
 }
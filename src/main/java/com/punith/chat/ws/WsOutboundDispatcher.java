@@ -0,0 +1,170 @@
+package com.punith.chat.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import com.punith.chat.config.VirtualThreadConfig;
+import com.punith.chat.messaging.MessageLatencyMetrics;
+import com.punith.chat.messaging.MessageLatencyMetrics.Stage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the executor, limits and metrics shared by all {@link OutboundSession} send queues on this node, and the
+ * watchdog that closes sessions whose socket write has been blocked past {@code ws.outbound.send-time-limit-ms}.
+ */
+@Component
+public class WsOutboundDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WsOutboundDispatcher.class);
+
+    private final int bufferSize;
+    private final long sendTimeLimitNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private final Set<OutboundSession> sessions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog;
+
+    private final AtomicLong queuedFrames = new AtomicLong();
+    private final Counter droppedOverflow;
+    private final Counter droppedCoalesced;
+    private final Counter slowConsumerDisconnects;
+    private final MessageLatencyMetrics latencyMetrics;
+
+    public WsOutboundDispatcher(@Value("${ws.outbound.buffer-size:256}") int bufferSize,
+                                @Value("${ws.outbound.send-time-limit-ms:5000}") long sendTimeLimitMs,
+                                @Value("${ws.outbound.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                                @Value("${ws.outbound.threads:0}") int threads,
+                                @Value("${ws.node-id:node-1}") String nodeId,
+                                MeterRegistry meterRegistry,
+                                MessageLatencyMetrics latencyMetrics,
+                                Environment environment) {
+        this.latencyMetrics = latencyMetrics;
+        this.bufferSize = bufferSize;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        this.overflowPolicy = overflowPolicy;
+        // socket writes block, so under virtual threads each drain simply gets its own thread
+        this.executor = VirtualThreadConfig.isActive(environment)
+                ? VirtualThreadConfig.virtualExecutor("ws-outbound-")
+                : Executors.newFixedThreadPool(
+                        threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2,
+                        new CustomizableThreadFactory("ws-outbound-"));
+
+        CustomizableThreadFactory watchdogThreads = new CustomizableThreadFactory("ws-outbound-watchdog-");
+        watchdogThreads.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogThreads);
+        // a stalled write is cut off at most a quarter of the limit (capped at 1s) late
+        long checkIntervalMs = Math.max(50, Math.min(1_000, sendTimeLimitMs / 4));
+        watchdog.scheduleWithFixedDelay(this::checkSendDeadlines,
+                checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat_ws_outbound_queue_depth", queuedFrames, AtomicLong::get)
+                .description("Frames waiting in WebSocket send queues on this node")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+        this.droppedOverflow = droppedCounter(meterRegistry, nodeId, "overflow");
+        this.droppedCoalesced = droppedCounter(meterRegistry, nodeId, "coalesced");
+        this.slowConsumerDisconnects = Counter.builder("chat_ws_slow_consumer_disconnects_total")
+                .description("WebSocket sessions closed for overflowing their send queue or exceeding the send time limit")
+                .tag("nodeId", nodeId)
+                .register(meterRegistry);
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String nodeId, String reason) {
+        return Counter.builder("chat_ws_outbound_dropped_total")
+                .description("Outbound WebSocket frames dropped by the overflow policy")
+                .tag("nodeId", nodeId)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public OutboundSession open(WebSocketSession session) {
+        OutboundSession outbound = new OutboundSession(session, this);
+        sessions.add(outbound);
+        return outbound;
+    }
+
+    void onClosed(OutboundSession session) {
+        sessions.remove(session);
+    }
+
+    private void checkSendDeadlines() {
+        long now = System.nanoTime();
+        for (OutboundSession session : sessions) {
+            try {
+                session.checkSendDeadline(now);
+            } catch (RuntimeException e) {
+                log.warn("Send deadline check failed for session {}", session.getId(), e);
+            }
+        }
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    long sendTimeLimitNanos() {
+        return sendTimeLimitNanos;
+    }
+
+    OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    public long queuedFrames() {
+        return queuedFrames.get();
+    }
+
+    void onQueued() {
+        queuedFrames.incrementAndGet();
+    }
+
+    void onDequeued() {
+        queuedFrames.decrementAndGet();
+    }
+
+    void onDropped(boolean coalesced) {
+        (coalesced ? droppedCoalesced : droppedOverflow).increment();
+    }
+
+    void onSent(OutboundFrame frame, long writeNanos) {
+        latencyMetrics.record(Stage.SOCKET_WRITE, writeNanos);
+        if (frame.acceptedAtMillis() > 0) {
+            latencyMetrics.recordSince(Stage.END_TO_END, frame.acceptedAtMillis());
+        }
+    }
+
+    void onSlowConsumerDisconnect() {
+        slowConsumerDisconnects.increment();
+    }
+
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor asyncTaskExecutor) {
+            asyncTaskExecutor.close();
+        }
+    }
+}
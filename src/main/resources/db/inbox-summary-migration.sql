@@ -0,0 +1,21 @@
+-- One-off backfill of the denormalized last-message columns on chats used by GET /chats/summary.
+-- Run once after deploying the new columns (ddl-auto adds them); it is safe to re-run because
+-- it only fills chats whose last_message_id is still behind their newest message.
+
+UPDATE chats c
+JOIN (
+    SELECT chat_id, MAX(id) AS last_message_id
+    FROM messages
+    GROUP BY chat_id
+) latest ON latest.chat_id = c.id
+JOIN messages m ON m.id = latest.last_message_id
+SET c.last_message_id = m.id,
+    c.last_message_sender_id = m.sender_id,
+    c.last_message_body = LEFT(m.body, 256),
+    c.last_message_at = m.created_at,
+    c.last_activity_at = m.created_at
+WHERE c.last_message_id IS NULL OR c.last_message_id < m.id;
+
+UPDATE chats
+SET last_activity_at = created_at
+WHERE last_activity_at IS NULL;
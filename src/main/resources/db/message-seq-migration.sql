@@ -0,0 +1,16 @@
+-- One-off backfill of per-chat message sequence numbers (messages.seq, chats.last_seq).
+-- Run once after deploying the new columns (ddl-auto adds them), with message writers stopped:
+-- it renumbers every chat from 1 in id order, including messages written since the upgrade,
+-- and then moves each chat's counter to its highest seq.
+
+UPDATE messages SET seq = NULL;
+
+UPDATE messages m
+JOIN (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY chat_id ORDER BY id) AS rn
+    FROM messages
+) numbered ON numbered.id = m.id
+SET m.seq = numbered.rn;
+
+UPDATE chats c
+SET c.last_seq = COALESCE((SELECT MAX(m.seq) FROM messages m WHERE m.chat_id = c.id), 0);
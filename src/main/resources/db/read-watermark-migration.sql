@@ -0,0 +1,20 @@
+-- One-off backfill of chat_participants read watermarks from the legacy
+-- per-message message_receipts table. Run once after deploying the watermark columns
+-- (ddl-auto adds them); it is safe to re-run because watermarks only move forward.
+
+UPDATE chat_participants cp
+JOIN (
+    SELECT m.chat_id, mr.user_id, MAX(m.id) AS last_read_message_id
+    FROM message_receipts mr
+    JOIN messages m ON m.id = mr.message_id
+    WHERE mr.read_ts IS NOT NULL
+    GROUP BY m.chat_id, mr.user_id
+) r ON r.chat_id = cp.chat_id AND r.user_id = cp.user_id
+SET cp.last_read_message_id = GREATEST(COALESCE(cp.last_read_message_id, 0), r.last_read_message_id);
+
+-- Once verified, receipts of chats above chat.receipts.per-message-max-participants are no longer
+-- read and can be pruned (replace 0 with the configured threshold):
+-- DELETE mr FROM message_receipts mr
+-- JOIN messages m ON m.id = mr.message_id
+-- JOIN (SELECT chat_id FROM chat_participants GROUP BY chat_id HAVING COUNT(*) > 0) big
+--   ON big.chat_id = m.chat_id;
@@ -0,0 +1,166 @@
+package com.punith.chat.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.domain.chat.Chat;
+import com.punith.chat.domain.message.Message;
+import com.punith.chat.domain.user.User;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.codec.EventEncoding;
+import com.punith.chat.service.ChatService;
+import com.punith.chat.service.InboxCache;
+import com.punith.chat.service.MessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatMessageConsumerTest {
+
+	private static final TopicPartition P0 = new TopicPartition("chat.messages", 0);
+
+	private final EventCodec eventCodec = new EventCodec(new ObjectMapper(), EventEncoding.JSON);
+	private final MessageService messageService = mock(MessageService.class);
+	/** "chatId:body" per persisted message, in persist order. */
+	private final List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+	/** Committed offset of P0 per commit, in order. */
+	private final List<Long> commits = Collections.synchronizedList(new ArrayList<>());
+	private final Set<TopicPartition> paused = new HashSet<>();
+	private final CountDownLatch slowChatEntered = new CountDownLatch(1);
+	private final CountDownLatch releaseSlowChat = new CountDownLatch(1);
+	private final Consumer<?, ?> kafka = kafkaConsumer();
+	private ChatMessageConsumer consumer;
+
+	@AfterEach
+	void tearDown() {
+		releaseSlowChat.countDown();
+		consumer.stop();
+	}
+
+	@Test
+	void aStuckChatHoldsBackNeitherLaterPollsNorOtherChatsButHoldsItsOffset() throws Exception {
+		start(2, 5000);
+
+		consumer.consume(List.of(record(0, 1L, "a")), kafka);
+		assertThat(slowChatEntered.await(5, TimeUnit.SECONDS)).isTrue();
+		consumer.consume(List.of(record(1, 2L, "b"), record(2, 1L, "c"), record(3, 3L, "d")), kafka);
+
+		await(() -> persisted.containsAll(List.of("2:b", "3:d")));
+		assertThat(persisted).doesNotContain("1:a", "1:c");
+		consumer.consume(List.of(), kafka);
+		assertThat(commits).containsExactly(0L);
+
+		releaseSlowChat.countDown();
+		await(() -> {
+			consumer.consume(List.of(), kafka);
+			return commits.contains(4L);
+		});
+		assertThat(persisted).containsSubsequence("1:a", "1:c");
+		// 2 is committed in between if the poll lands after "a" finished but before "c" did
+		assertThat(commits).startsWith(0L).endsWith(4L).isSorted();
+	}
+
+	@Test
+	void pausesAtMaxInFlightAndResumesOnceHalfIsDone() throws Exception {
+		start(1, 2);
+
+		consumer.consume(List.of(record(0, 1L, "a")), kafka);
+		assertThat(slowChatEntered.await(5, TimeUnit.SECONDS)).isTrue();
+		consumer.consume(List.of(record(1, 2L, "b")), kafka);
+		assertThat(paused).containsExactly(P0);
+
+		releaseSlowChat.countDown();
+		await(() -> {
+			consumer.consume(List.of(), kafka);
+			return paused.isEmpty();
+		});
+		assertThat(persisted).contains("1:a");
+	}
+
+	private void start(int concurrency, int maxInFlight) {
+		when(messageService.sendMessageBatch(any())).thenAnswer(invocation -> {
+			List<ChatMessageEvent> events = invocation.getArgument(0);
+			if (events.get(0).chatId() == 1L && slowChatEntered.getCount() > 0) {
+				slowChatEntered.countDown();
+				releaseSlowChat.await();
+			}
+			List<Message> messages = new ArrayList<>(events.size());
+			for (ChatMessageEvent event : events) {
+				persisted.add(event.chatId() + ":" + event.body());
+				messages.add(message(event));
+			}
+			return messages;
+		});
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		consumer = new ChatMessageConsumer(eventCodec, messageService, mock(ChatService.class),
+				mock(WsFanoutPublisher.class), mock(DlqPublisher.class),
+				new MessageLatencyMetrics("node-1", meterRegistry), mock(InboxCache.class), meterRegistry,
+				concurrency, 1, maxInFlight, new StandardEnvironment());
+		consumer.start();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Consumer<?, ?> kafkaConsumer() {
+		Consumer<String, byte[]> mock = mock(Consumer.class);
+		when(mock.assignment()).thenReturn(Set.of(P0));
+		when(mock.paused()).thenAnswer(invocation -> Set.copyOf(paused));
+		doAnswer(invocation -> paused.addAll(invocation.getArgument(0))).when(mock).pause(any());
+		doAnswer(invocation -> paused.removeAll(invocation.getArgument(0))).when(mock).resume(any());
+		doAnswer(invocation -> {
+			Map<TopicPartition, OffsetAndMetadata> offsets = invocation.getArgument(0);
+			commits.add(offsets.get(P0).offset());
+			return null;
+		}).when(mock).commitAsync(any(Map.class), any());
+		return mock;
+	}
+
+	private ConsumerRecord<String, byte[]> record(long offset, long chatId, String body) throws Exception {
+		byte[] value = eventCodec.encode(new ChatMessageEvent(chatId, 99L, body, "c-" + offset, 1L));
+		return new ConsumerRecord<>(P0.topic(), P0.partition(), offset, Long.toString(chatId), value);
+	}
+
+	private static Message message(ChatMessageEvent event) {
+		Chat chat = new Chat();
+		chat.setId(event.chatId());
+		User sender = new User();
+		sender.setId(event.senderId());
+		Message message = new Message();
+		message.setId((long) event.body().hashCode());
+		message.setChat(chat);
+		message.setSender(sender);
+		message.setBody(event.body());
+		message.setSeq(1L);
+		message.setCreatedAt(OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+		return message;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.punith.chat.messaging;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class PartitionOffsetsTest {
+
+	private static final TopicPartition P0 = new TopicPartition("chat.messages", 0);
+	private static final TopicPartition P1 = new TopicPartition("chat.messages", 1);
+
+	private final PartitionOffsets offsets = new PartitionOffsets();
+
+	@Test
+	void holdsEachPartitionAtItsLowestUnfinishedOffset() {
+		offsets.started(P0, 10);
+		offsets.started(P0, 11);
+		offsets.started(P0, 12);
+		offsets.started(P1, 4);
+
+		offsets.finished(P0, 11);
+		offsets.finished(P0, 12);
+		offsets.finished(P1, 4);
+
+		assertThat(offsets.committable()).containsOnly(entry(P0, 10L), entry(P1, 5L));
+
+		offsets.finished(P0, 10);
+		assertThat(offsets.committable()).containsOnly(entry(P0, 13L));
+	}
+
+	@Test
+	void returnsOnlyPositionsThatMoved() {
+		offsets.started(P0, 0);
+		assertThat(offsets.committable()).containsOnly(entry(P0, 0L));
+		assertThat(offsets.committable()).isEmpty();
+
+		offsets.skipped(P0, 1);
+		assertThat(offsets.committable()).isEmpty();
+
+		offsets.finished(P0, 0);
+		assertThat(offsets.committable()).containsOnly(entry(P0, 2L));
+	}
+
+	@Test
+	void revokedPartitionsHandBackTheirLastPositionAndIgnoreLateFinishes() {
+		offsets.started(P0, 7);
+		offsets.started(P0, 8);
+		offsets.finished(P0, 7);
+
+		assertThat(offsets.revoke(List.of(P0))).containsOnly(entry(P0, 8L));
+
+		offsets.finished(P0, 8);
+		assertThat(offsets.committable()).isEmpty();
+	}
+}
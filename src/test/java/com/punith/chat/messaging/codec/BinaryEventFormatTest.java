@@ -0,0 +1,99 @@
+package com.punith.chat.messaging.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.ChatMessageEvent;
+import com.punith.chat.messaging.ReadReceiptEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MembershipChangedFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.MessageStatusFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import com.punith.chat.messaging.WsFanoutEvents.ReadReceiptFanoutEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryEventFormatTest {
+
+	@Test
+	void roundTripsEveryComponent() {
+		assertRoundTrip(new ChatMessageEvent(42L, 7L, "héllo ✓ 😀", "c0ffee-0001", 1_700_000_000_000L));
+		assertRoundTrip(new ReadReceiptEvent(42L, 7L, List.of(1003L, 1001L, 1002L, 5L), 1003L, 1_700_000_000_000L));
+		assertRoundTrip(new NewMessageFanoutEvent(1_000_001L, 42L, 7L, "hey", "2025-01-01T12:00:00Z",
+				1_700_000_000_000L, 1_700_000_000_005L, 1_234L));
+		assertRoundTrip(new ReadReceiptFanoutEvent(42L, 7L, List.of(), 1003L, "2025-01-01T12:00:00Z"));
+		assertRoundTrip(new MessageStatusFanoutEvent(1_000_001L, 42L, 7L, "DELIVERED"));
+		assertRoundTrip(new MembershipChangedFanoutEvent(42L));
+	}
+
+	@Test
+	void keepsNullComponentsApartFromEmptyOnes() {
+		assertRoundTrip(new ChatMessageEvent(42L, 7L, "", null, 1L));
+		assertRoundTrip(new ReadReceiptEvent(42L, 7L, null, 1003L, null));
+		assertRoundTrip(new MembershipChangedFanoutEvent(null));
+	}
+
+	@Test
+	void encodesIdListDeltasOfEitherSign() {
+		List<Long> ids = List.of(Long.MAX_VALUE, 0L, -5L, Long.MIN_VALUE + 1, 3L, 3L);
+
+		assertRoundTrip(new ReadReceiptEvent(1L, 2L, ids, null, 3L));
+	}
+
+	@Test
+	void isSmallerThanJson() throws Exception {
+		ReadReceiptEvent event = new ReadReceiptEvent(42L, 7L,
+				List.of(1_000_001L, 1_000_002L, 1_000_003L, 1_000_004L), null, 1_700_000_000_000L);
+
+		assertThat(BinaryEventFormat.encode(event).length)
+				.isLessThan(new ObjectMapper().writeValueAsBytes(event).length / 2);
+	}
+
+	@Test
+	void ignoresTrailingBytesFromNewerComponents() {
+		MessageStatusFanoutEvent event = new MessageStatusFanoutEvent(1L, 2L, 3L, "READ");
+		byte[] payload = BinaryEventFormat.encode(event);
+		byte[] extended = Arrays.copyOf(payload, payload.length + 3);
+
+		assertThat(BinaryEventFormat.decode(extended, MessageStatusFanoutEvent.class)).isEqualTo(event);
+	}
+
+	@Test
+	void rejectsOtherVersionsAndTypes() {
+		byte[] payload = BinaryEventFormat.encode(new MembershipChangedFanoutEvent(42L));
+
+		assertThatThrownBy(() -> BinaryEventFormat.decode(payload, ChatMessageEvent.class))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("type tag");
+
+		byte[] future = payload.clone();
+		future[1] = BinaryEventFormat.VERSION + 1;
+		assertThatThrownBy(() -> BinaryEventFormat.decode(future, MembershipChangedFanoutEvent.class))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("version");
+	}
+
+	@Test
+	void codecReadsBothEncodingsWhateverItWrites() throws Exception {
+		EventCodec json = new EventCodec(new ObjectMapper(), EventEncoding.JSON);
+		EventCodec binary = new EventCodec(new ObjectMapper(), EventEncoding.BINARY);
+		ChatMessageEvent event = new ChatMessageEvent(42L, 7L, "hi", null, 1L);
+
+		byte[] fromJson = json.encode(event);
+		byte[] fromBinary = binary.encode(event);
+
+		assertThat(EventCodec.encodingOf(fromJson)).isEqualTo(EventEncoding.JSON);
+		assertThat(EventCodec.encodingOf(fromBinary)).isEqualTo(EventEncoding.BINARY);
+		assertThat(json.decode(fromBinary, ChatMessageEvent.class)).isEqualTo(event);
+		assertThat(binary.decode(fromJson, ChatMessageEvent.class)).isEqualTo(event);
+	}
+
+	private static void assertRoundTrip(Object event) {
+		byte[] payload = BinaryEventFormat.encode(event);
+
+		assertThat(BinaryEventFormat.isBinary(payload)).isTrue();
+		assertThat(BinaryEventFormat.decode(payload, event.getClass())).isEqualTo(event);
+	}
+}
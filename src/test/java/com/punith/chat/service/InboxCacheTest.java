@@ -0,0 +1,146 @@
+package com.punith.chat.service;
+
+import com.punith.chat.domain.chat.Chat;
+import com.punith.chat.domain.message.Message;
+import com.punith.chat.domain.user.User;
+import com.punith.chat.repository.ChatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+class InboxCacheTest {
+
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	private final ParticipantDirectory participantDirectory = mock(ParticipantDirectory.class);
+	/** "evalSha key" or "eval key" per script call sent, in order, across all pipelines. */
+	private final List<String> sent = new ArrayList<>();
+	/** Per pipeline: what Redis answers, given the calls of that pipeline. */
+	private final List<Function<List<String>, List<Object>>> replies = new ArrayList<>();
+	private InboxCache inboxCache;
+
+	@BeforeEach
+	void setUp() {
+		inboxCache = new InboxCache(redisTemplate, mock(ChatRepository.class), participantDirectory, true, 900,
+				new SimpleMeterRegistry());
+		when(participantDirectory.getParticipantIds(anyLong())).thenReturn(new long[]{7L, 8L});
+
+		RedisScriptingCommands scripting = mock(RedisScriptingCommands.class, invocation -> {
+			byte[][] keysAndArgs = (byte[][]) invocation.getRawArguments()[3];
+			sent.add(invocation.getMethod().getName() + " " + new String(keysAndArgs[0], StandardCharsets.UTF_8));
+			return null;
+		});
+		RedisConnection connection = mock(RedisConnection.class);
+		when(connection.scriptingCommands()).thenReturn(scripting);
+		when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+			int before = sent.size();
+			((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+			List<Object> results = replies.remove(0).apply(sent.subList(before, sent.size()));
+			for (Object result : results) {
+				if (result instanceof Exception) {
+					throw new RedisPipelineException(new RedisSystemException("pipeline failed", null), results);
+				}
+			}
+			return results;
+		});
+	}
+
+	@Test
+	void onlyTheBumpsRefusedWithNoScriptAreSentAgain() {
+		replies.add(calls -> List.of(0L, 0L));
+		// chat 1's calls ran where the scripts were cached, chat 2's where a failover had emptied the cache
+		replies.add(calls -> List.of(1L, 1L, 1L, noScript(), noScript(), noScript()));
+		replies.add(calls -> calls.stream().map(call -> (Object) 1L).toList());
+
+		inboxCache.onMessagesPersisted(List.of(message(1L, 100L), message(2L, 200L)));
+
+		assertThat(sent).containsExactly(
+				"evalSha chat_counted:1", "evalSha chat_counted:2",
+				"evalSha inbox:{7}", "evalSha inbox:{8}", "evalSha chat_last:1",
+				"evalSha inbox:{7}", "evalSha inbox:{8}", "evalSha chat_last:2",
+				"eval inbox:{7}", "eval inbox:{8}", "eval chat_last:2");
+	}
+
+	@Test
+	void aWatermarkAdvanceRefusedWithNoScriptStillCountsItsMessages() {
+		replies.add(calls -> List.of(0L, noScript()));
+		// the retried advance reports the old watermark, so chat 2's message is counted
+		replies.add(calls -> List.of(0L));
+		replies.add(calls -> calls.stream().map(call -> (Object) 1L).toList());
+
+		inboxCache.onMessagesPersisted(List.of(message(1L, 100L), message(2L, 200L)));
+
+		assertThat(sent).containsExactly(
+				"evalSha chat_counted:1", "evalSha chat_counted:2",
+				"eval chat_counted:2",
+				"evalSha inbox:{7}", "evalSha inbox:{8}", "evalSha chat_last:1",
+				"evalSha inbox:{7}", "evalSha inbox:{8}", "evalSha chat_last:2");
+	}
+
+	@Test
+	void lastSeqsReadsEveryChatInOnePipelineAndLeavesUncachedChatsOut() {
+		StringRedisConnection connection = mock(StringRedisConnection.class);
+		when(connection.hGet("chat_last:1", "seq")).thenReturn(null);
+		List<String> read = new ArrayList<>();
+		when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+			((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+			mockingDetails(connection).getInvocations().forEach(call -> read.add((String) call.getArgument(0)));
+			return Arrays.asList("41", null, "7");
+		});
+
+		Map<Long, Long> seqs = inboxCache.lastSeqs(List.of(1L, 2L, 3L));
+
+		assertThat(read).containsExactly("chat_last:1", "chat_last:2", "chat_last:3");
+		assertThat(seqs).containsOnly(entry(1L, 41L), entry(3L, 7L));
+	}
+
+	@Test
+	void lastSeqsIsEmptyWhenRedisCannotBeRead() {
+		when(redisTemplate.executePipelined(any(RedisCallback.class)))
+				.thenThrow(new RedisSystemException("connection refused", null));
+
+		assertThat(inboxCache.lastSeqs(List.of(1L, 2L))).isEmpty();
+	}
+
+	private static Exception noScript() {
+		return new RedisSystemException("NOSCRIPT No matching script. Please use EVAL.", null);
+	}
+
+	private static Message message(long chatId, long messageId) {
+		Chat chat = new Chat();
+		chat.setId(chatId);
+		User sender = new User();
+		sender.setId(99L);
+		Message message = new Message();
+		message.setId(messageId);
+		message.setSeq(messageId);
+		message.setChat(chat);
+		message.setSender(sender);
+		message.setBody("hi");
+		message.setCreatedAt(OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+		return message;
+	}
+}
@@ -0,0 +1,55 @@
+package com.punith.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+	@Test
+	void roundTripsTimestampAndId() {
+		KeysetCursor cursor = new KeysetCursor(OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 123_456_789, ZoneOffset.UTC),
+				Long.MAX_VALUE);
+
+		assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+	}
+
+	@Test
+	void normalizesOffsetsToUtc() {
+		OffsetDateTime local = OffsetDateTime.of(2025, 1, 1, 14, 0, 0, 0, ZoneOffset.ofHours(2));
+
+		KeysetCursor decoded = KeysetCursor.decode(new KeysetCursor(local, 7L).encode());
+
+		assertThat(decoded.at()).isEqualTo(OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+		assertThat(decoded.id()).isEqualTo(7L);
+	}
+
+	@Test
+	void tokenIsUrlSafe() {
+		String token = new KeysetCursor(OffsetDateTime.now(ZoneOffset.UTC), 42L).encode();
+
+		assertThat(token).matches("[A-Za-z0-9_-]+");
+	}
+
+	@Test
+	void rejectsMalformedTokens() {
+		assertThatThrownBy(() -> KeysetCursor.decode("not base64!"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(token("2025-01-01T12:00:00Z")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(token("yesterday|7")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(token("2025-01-01T12:00:00Z|seven")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static String token(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,102 @@
+package com.punith.chat.service;
+
+import com.punith.chat.repository.ChatParticipantRepository;
+import com.punith.chat.repository.ChatRepository;
+import com.punith.chat.repository.MessageBulkRepository;
+import com.punith.chat.repository.MessageReceiptRepository;
+import com.punith.chat.repository.MessageRepository;
+import com.punith.chat.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageServiceTest {
+
+	private static final long USER = 7L;
+	private static final long CHAT = 42L;
+
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+	private final MessageRepository messageRepository = mock(MessageRepository.class);
+	private final ChatParticipantRepository chatParticipantRepository = mock(ChatParticipantRepository.class);
+	private final ChatService chatService = mock(ChatService.class);
+	private MessageService messageService;
+
+	@BeforeEach
+	void setUp() {
+		InboxCache inboxCache = new InboxCache(redisTemplate, mock(ChatRepository.class),
+				mock(ParticipantDirectory.class), true, 900, new SimpleMeterRegistry());
+		messageService = new MessageService(messageRepository, mock(MessageReceiptRepository.class),
+				mock(UserRepository.class), mock(ChatRepository.class), chatParticipantRepository,
+				mock(MessageBulkRepository.class), chatService, inboxCache, 0);
+
+		when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+		when(chatService.getParticipantIds(CHAT)).thenReturn(new long[]{USER, 8L});
+		when(chatParticipantRepository.findLastReadMessageId(CHAT, USER)).thenReturn(Optional.of(90L));
+		TransactionSynchronizationManager.initSynchronization();
+	}
+
+	@AfterEach
+	void tearDown() {
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+
+	@Test
+	void aReadUpToTheLastMessageClearsTheCachedUnreadCountAfterCommit() {
+		when(messageRepository.countByChatIdAndIdIn(eq(CHAT), anyCollection())).thenReturn(1L);
+		when(hashOperations.get("chat_last:" + CHAT, "msgId")).thenReturn("100");
+
+		assertThat(messageService.markMessagesAsRead(USER, CHAT, null, 100L)).isEqualTo(100L);
+		verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+
+		commit();
+		verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("inbox_unread:{" + USER + "}")),
+				eq(Long.toString(CHAT)), eq("0"));
+	}
+
+	@Test
+	void aReadShortOfTheLastMessageDropsTheCachedInbox() {
+		when(messageRepository.countByChatIdAndIdIn(eq(CHAT), anyCollection())).thenReturn(2L);
+		when(hashOperations.get("chat_last:" + CHAT, "msgId")).thenReturn("120");
+
+		messageService.markMessagesAsRead(USER, CHAT, List.of(95L, 100L), null);
+		commit();
+
+		verify(redisTemplate).delete(List.of("inbox:{" + USER + "}", "inbox_unread:{" + USER + "}"));
+	}
+
+	@Test
+	void aRolledBackReadLeavesTheCacheAlone() {
+		when(messageRepository.countByChatIdAndIdIn(eq(CHAT), anyCollection())).thenReturn(1L);
+
+		messageService.markMessagesAsRead(USER, CHAT, null, 100L);
+		TransactionSynchronizationManager.getSynchronizations()
+				.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+		verify(redisTemplate, never()).opsForHash();
+	}
+
+	private static void commit() {
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+	}
+}
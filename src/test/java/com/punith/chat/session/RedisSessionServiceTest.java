@@ -0,0 +1,115 @@
+package com.punith.chat.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedisSessionServiceTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	private final StringRedisConnection connection = mock(StringRedisConnection.class);
+	/** Key/arg arrays of every APPLY_SCRIPT call that reached Redis, failed or not. */
+	private final List<String[]> scriptCalls = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private RedisSessionService service;
+
+	@AfterEach
+	void tearDown() {
+		if (service != null && service.isRunning()) {
+			service.stop();
+		}
+	}
+
+	@Test
+	void eachScriptCallStaysWithinOneHashSlot() {
+		service = service();
+		stubRedis();
+
+		for (long userId = 1; userId <= 50; userId++) {
+			service.registerSession(userId, "s" + userId);
+		}
+
+		assertThat(scriptCalls).isNotEmpty();
+		for (String[] keysAndArgs : scriptCalls) {
+			String[] keys = Arrays.copyOf(keysAndArgs, keysAndArgs.length / 7 * 3);
+			int slot = ClusterSlotHashUtil.calculateSlot(keys[0]);
+			assertThat(keys).allSatisfy(key -> assertThat(ClusterSlotHashUtil.calculateSlot(key)).isEqualTo(slot));
+		}
+	}
+
+	@Test
+	void retriesABatchThatFailed() throws Exception {
+		service = service();
+		stubRedis();
+		failuresLeft.set(2);
+		service.start();
+
+		service.registerSession(7L, "s-1");
+		service.unregisterSession(7L, "s-1", true);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while ((failuresLeft.get() > 0 || meterRegistry.get("chat_presence_pending_ops").gauge().value() > 0)
+				&& System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(meterRegistry.get("chat_presence_flush_failed_total").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("chat_presence_pending_ops").gauge().value()).isZero();
+		// the add is retried ahead of the removal queued after it, so the last attempt leaves the session gone
+		List<String> ops = scriptCalls.stream().flatMap(call -> ops(call).stream()).toList();
+		assertThat(ops).endsWith("A", "L");
+	}
+
+	/** The op letters of one APPLY_SCRIPT call: ARGV is the node id followed by groups of four. */
+	private static List<String> ops(String[] keysAndArgs) {
+		int changes = keysAndArgs.length / 7;
+		List<String> ops = new ArrayList<>();
+		for (int i = 0; i < changes; i++) {
+			ops.add(keysAndArgs[changes * 3 + 1 + i * 4]);
+		}
+		return ops;
+	}
+
+	private RedisSessionService service() {
+		return new RedisSessionService(redisTemplate, "node-a", 30_000, 60_000, 500, 30, meterRegistry);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void stubRedis() {
+		doAnswer(invocation -> {
+			Object[] arguments = invocation.getArguments();
+			scriptCalls.add(Arrays.copyOfRange(arguments, 3, arguments.length, String[].class));
+			return null;
+		}).when(connection).evalSha(anyString(), any(ReturnType.class), anyInt(), any(String[].class));
+		when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+			int before = scriptCalls.size();
+			((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+			if (scriptCalls.size() > before && failuresLeft.getAndDecrement() > 0) {
+				throw new RedisConnectionFailureException("down");
+			}
+			return Arrays.asList(new Object[3]);
+		});
+	}
+}
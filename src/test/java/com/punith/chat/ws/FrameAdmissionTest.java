@@ -0,0 +1,185 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.ChatMessageProducer;
+import com.punith.chat.messaging.ReadReceiptProducer;
+import com.punith.chat.ws.FrameAdmission.Budgets;
+import com.punith.chat.ws.FrameAdmission.Gcra;
+import com.punith.chat.ws.FrameAdmission.Kind;
+import com.punith.chat.ws.FrameAdmission.Rejection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FrameAdmissionTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ChatMessageProducer messageProducer = mock(ChatMessageProducer.class);
+	private final ReadReceiptProducer readReceiptProducer = mock(ReadReceiptProducer.class);
+	private final WsOutboundDispatcher outboundDispatcher = mock(WsOutboundDispatcher.class);
+
+	@Test
+	void gcraAdmitsABurstThenOneRequestPerInterval() {
+		Gcra gcra = new Gcra(10, 5);
+		AtomicLong bucket = Gcra.newBucket();
+		long now = 1_000 * SECOND;
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(gcra.tryAcquire(bucket, now)).isTrue();
+		}
+		assertThat(gcra.tryAcquire(bucket, now)).isFalse();
+		assertThat(gcra.retryAfterNanos(bucket, now)).isEqualTo(SECOND / 10);
+
+		assertThat(gcra.tryAcquire(bucket, now + SECOND / 10 - 1)).isFalse();
+		assertThat(gcra.tryAcquire(bucket, now + SECOND / 10)).isTrue();
+		assertThat(gcra.tryAcquire(bucket, now + SECOND / 10)).isFalse();
+	}
+
+	@Test
+	void gcraRefillsNoFurtherThanTheBurst() {
+		Gcra gcra = new Gcra(10, 5);
+		AtomicLong bucket = Gcra.newBucket();
+		long now = -3 * SECOND; // nanoTime may be negative
+
+		assertThat(admitted(gcra, bucket, now, 100)).isEqualTo(5);
+		assertThat(admitted(gcra, bucket, now + SECOND / 5, 100)).isEqualTo(2);
+		// idle far longer than the burst takes to refill: still only a burst
+		assertThat(admitted(gcra, bucket, now + 60 * SECOND, 100)).isEqualTo(5);
+	}
+
+	@Test
+	void aZeroRateDisablesTheLimit() {
+		Gcra gcra = new Gcra(0, 1);
+		AtomicLong bucket = Gcra.newBucket();
+
+		assertThat(admitted(gcra, bucket, 0, 1_000)).isEqualTo(1_000);
+	}
+
+	@Test
+	void sessionsOfAUserShareItsBudgetButNotTheFrameBudget() {
+		FrameAdmission admission = admission();
+		Budgets phone = admission.open(7L);
+		Budgets laptop = admission.open(7L);
+		Budgets other = admission.open(8L);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(admission.admit(phone, Kind.MESSAGE)).isNull();
+		}
+		assertThat(admission.admit(laptop, Kind.MESSAGE)).isEqualTo(Rejection.USER_RATE);
+		assertThat(admission.admit(laptop, Kind.READ)).isNull();
+		assertThat(admission.admit(other, Kind.MESSAGE)).isNull();
+
+		for (int i = 0; i < 4; i++) {
+			assertThat(admission.admitFrame(phone)).isNull();
+		}
+		assertThat(admission.admitFrame(phone)).isEqualTo(Rejection.SESSION_RATE);
+		assertThat(admission.admitFrame(laptop)).isNull();
+		assertThat(meterRegistry.get("chat_ws_frames_rejected_total")
+				.tag("reason", "user_rate").tag("kind", "message").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void userBudgetsLiveUntilTheLastSessionCloses() {
+		FrameAdmission admission = admission();
+		Budgets first = admission.open(7L);
+		exhaustMessages(admission, first);
+
+		admission.close(first);
+		Budgets second = admission.open(7L);
+		assertThat(admission.admit(second, Kind.MESSAGE)).isNull();
+
+		Budgets third = admission.open(7L);
+		admission.close(second);
+		assertThat(admission.userCount()).isEqualTo(1);
+		exhaustMessages(admission, third);
+		assertThat(admission.admit(admission.open(7L), Kind.MESSAGE)).isEqualTo(Rejection.USER_RATE);
+	}
+
+	@Test
+	void concurrentConnectsOfAUserGetOneBudget() throws Exception {
+		FrameAdmission admission = admission();
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Budgets> opened = new CopyOnWriteArrayList<>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				executor.execute(() -> {
+					try {
+						start.await();
+						opened.add(admission.open(7L));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			start.countDown();
+		} finally {
+			executor.shutdown();
+			assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+		assertThat(opened).hasSize(threads);
+		exhaustMessages(admission, opened.get(0));
+		for (Budgets budgets : opened) {
+			assertThat(admission.admit(budgets, Kind.MESSAGE)).isEqualTo(Rejection.USER_RATE);
+		}
+
+		opened.forEach(admission::close);
+		assertThat(admission.userCount()).isZero();
+	}
+
+	@Test
+	void shedsKafkaBoundFramesWhenOverloaded() {
+		FrameAdmission admission = admission();
+		Budgets budgets = admission.open(7L);
+		when(messageProducer.inFlight()).thenReturn(60);
+		when(readReceiptProducer.inFlight()).thenReturn(40);
+
+		assertThat(admission.admit(budgets, Kind.MESSAGE)).isEqualTo(Rejection.OVERLOADED);
+		assertThat(admission.admit(budgets, Kind.OTHER)).isNull();
+		assertThat(admission.retryAfterMillis(budgets, Kind.MESSAGE, Rejection.OVERLOADED)).isZero();
+
+		when(messageProducer.inFlight()).thenReturn(0);
+		when(readReceiptProducer.inFlight()).thenReturn(0);
+		when(outboundDispatcher.queuedFrames()).thenReturn(1_000L);
+		assertThat(admission.admit(budgets, Kind.READ)).isEqualTo(Rejection.OVERLOADED);
+	}
+
+	/**
+	 * A session burst of 4 frames, 3 messages and 50 reads per user; the refill is slow enough that none of it
+	 * comes back while a test runs.
+	 */
+	private FrameAdmission admission() {
+		return new FrameAdmission(0.01, 4, 0.01, 3, 0.01, 50, 100, 1_000,
+				messageProducer, readReceiptProducer, outboundDispatcher, "test-node", meterRegistry);
+	}
+
+	private static void exhaustMessages(FrameAdmission admission, Budgets budgets) {
+		while (admission.admit(budgets, Kind.MESSAGE) == null) {
+			// drain the burst
+		}
+	}
+
+	private static int admitted(Gcra gcra, AtomicLong bucket, long now, int attempts) {
+		int admitted = 0;
+		for (int i = 0; i < attempts; i++) {
+			if (gcra.tryAcquire(bucket, now)) {
+				admitted++;
+			}
+		}
+		return admitted;
+	}
+}
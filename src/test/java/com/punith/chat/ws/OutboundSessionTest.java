@@ -0,0 +1,173 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.MessageLatencyMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboundSessionTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean open = new AtomicBoolean(true);
+	/** The first write blocks until this opens, keeping everything after it queued. */
+	private final CountDownLatch firstWrite = new CountDownLatch(1);
+	private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+	private final CountDownLatch closed = new CountDownLatch(1);
+	private volatile CloseStatus closeStatus;
+	private WsOutboundDispatcher dispatcher;
+
+	@AfterEach
+	void tearDown() {
+		firstWrite.countDown();
+		dispatcher.destroy();
+	}
+
+	@Test
+	void dropOldestDiscardsTheOldestFanoutFrameButNeverAReply() throws Exception {
+		OutboundSession outbound = open(OverflowPolicy.DROP_OLDEST, 2, 5_000);
+		outbound.enqueue(fanout("in-flight", null));
+		awaitFirstWrite();
+
+		assertThat(outbound.enqueue(reply("ack"))).isTrue();
+		assertThat(outbound.enqueue(fanout("old", null))).isTrue();
+		assertThat(outbound.enqueue(fanout("new", null))).isTrue();
+
+		firstWrite.countDown();
+		awaitSent(3);
+		assertThat(sent).containsExactly("in-flight", "ack", "new");
+		assertThat(dropped("overflow")).isEqualTo(1);
+	}
+
+	@Test
+	void coalesceReplacesTheSupersededFrame() throws Exception {
+		OutboundSession outbound = open(OverflowPolicy.COALESCE, 2, 5_000);
+		outbound.enqueue(fanout("in-flight", null));
+		awaitFirstWrite();
+
+		outbound.enqueue(fanout("receipt-1", "read:1:7"));
+		outbound.enqueue(fanout("message", null));
+		outbound.enqueue(fanout("receipt-2", "read:1:7"));
+
+		firstWrite.countDown();
+		awaitSent(3);
+		assertThat(sent).containsExactly("in-flight", "message", "receipt-2");
+		assertThat(dropped("coalesced")).isEqualTo(1);
+	}
+
+	@Test
+	void disconnectClosesTheSessionWhenTheQueueIsFull() throws Exception {
+		OutboundSession outbound = open(OverflowPolicy.DISCONNECT, 1, 5_000);
+		outbound.enqueue(fanout("in-flight", null));
+		awaitFirstWrite();
+
+		assertThat(outbound.enqueue(fanout("queued", null))).isTrue();
+		assertThat(outbound.enqueue(fanout("overflow", null))).isFalse();
+
+		assertThat(closeStatus.getCode()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE.getCode());
+		assertThat(outbound.depth()).isZero();
+		assertThat(dispatcher.queuedFrames()).isZero();
+	}
+
+	@Test
+	void aQueueFullOfRepliesClosesTheSession() throws Exception {
+		OutboundSession outbound = open(OverflowPolicy.DROP_OLDEST, 2, 5_000);
+		outbound.enqueue(fanout("in-flight", null));
+		awaitFirstWrite();
+
+		outbound.enqueue(reply("ack-1"));
+		outbound.enqueue(reply("ack-2"));
+		assertThat(outbound.enqueue(reply("ack-3"))).isFalse();
+
+		assertThat(closeStatus.getCode()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE.getCode());
+		assertThat(slowConsumerDisconnects()).isEqualTo(1);
+	}
+
+	@Test
+	void watchdogClosesASessionWhoseWriteIsStuck() throws Exception {
+		OutboundSession outbound = open(OverflowPolicy.DROP_OLDEST, 16, 100);
+		outbound.enqueue(fanout("stuck", null));
+		awaitFirstWrite();
+
+		// the write never completes on its own; only the watchdog's close releases it
+		assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(closeStatus.getCode()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE.getCode());
+		assertThat(slowConsumerDisconnects()).isEqualTo(1);
+		assertThat(outbound.enqueue(fanout("after-close", null))).isFalse();
+	}
+
+	private OutboundSession open(OverflowPolicy policy, int bufferSize, long sendTimeLimitMs) throws IOException {
+		dispatcher = new WsOutboundDispatcher(bufferSize, sendTimeLimitMs, policy, 1, "test-node", meterRegistry,
+				new MessageLatencyMetrics("test-node", meterRegistry), new StandardEnvironment());
+
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s-1");
+		when(session.isOpen()).thenAnswer(invocation -> open.get());
+		doAnswer(invocation -> {
+			WebSocketMessage<?> message = invocation.getArgument(0);
+			if (firstWriteStarted.getCount() > 0) {
+				firstWriteStarted.countDown();
+				if (!firstWrite.await(10, TimeUnit.SECONDS) || !open.get()) {
+					throw new IOException("closed while writing");
+				}
+			}
+			sent.add((String) message.getPayload());
+			return null;
+		}).when(session).sendMessage(any());
+		doAnswer(invocation -> {
+			closeStatus = invocation.getArgument(0);
+			open.set(false);
+			firstWrite.countDown();
+			closed.countDown();
+			return null;
+		}).when(session).close(any(CloseStatus.class));
+
+		return dispatcher.open(session);
+	}
+
+	private void awaitFirstWrite() throws InterruptedException {
+		assertThat(firstWriteStarted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private void awaitSent(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (sent.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(sent).hasSize(count);
+	}
+
+	private double dropped(String reason) {
+		return meterRegistry.get("chat_ws_outbound_dropped_total").tag("reason", reason).counter().count();
+	}
+
+	private double slowConsumerDisconnects() {
+		return meterRegistry.get("chat_ws_slow_consumer_disconnects_total").counter().count();
+	}
+
+	private static OutboundFrame fanout(String text, String coalesceKey) {
+		return new OutboundFrame("TEST", new TextMessage(text), coalesceKey, 0L, false);
+	}
+
+	private static OutboundFrame reply(String text) {
+		return OutboundFrame.reply(new TextMessage(text));
+	}
+}
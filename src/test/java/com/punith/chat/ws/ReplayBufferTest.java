@@ -0,0 +1,113 @@
+package com.punith.chat.ws;
+
+import com.punith.chat.messaging.WsFanoutEvents.NewMessageFanoutEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayBufferTest {
+
+	private static final long CHAT = 42L;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void servesTheContiguousRunAfterTheClientsSeq() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 5);
+
+		assertThat(seqs(buffer.since(CHAT, 2, 10, () -> 5))).containsExactly(3L, 4L, 5L);
+		assertThat(buffer.since(CHAT, 5, 10, () -> 5)).isEmpty();
+		assertThat(counter("chat_ws_replay_hits_total")).isEqualTo(2);
+	}
+
+	@Test
+	void returnsOneExtraEventWhenMoreFollow() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 5);
+
+		assertThat(seqs(buffer.since(CHAT, 0, 2, () -> 5))).containsExactly(1L, 2L, 3L);
+	}
+
+	@Test
+	void missesWhenTheRingDoesNotReachBackFarEnough() {
+		ReplayBuffer buffer = new ReplayBuffer(4, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 10);
+
+		assertThat(buffer.since(CHAT, 5, 10, () -> 10)).isNull();
+		assertThat(seqs(buffer.since(CHAT, 6, 10, () -> 10))).containsExactly(7L, 8L, 9L, 10L);
+		assertThat(counter("chat_ws_replay_misses_total")).isEqualTo(1);
+	}
+
+	@Test
+	void aGapInReceivedSeqsResetsTheRing() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 3);
+		buffer.append(event(CHAT, 5));
+
+		assertThat(buffer.since(CHAT, 2, 10, () -> 5)).isNull();
+		assertThat(seqs(buffer.since(CHAT, 4, 10, () -> 5))).containsExactly(5L);
+	}
+
+	@Test
+	void missesWhenTheDatabaseHasNewerMessagesThanTheRing() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 5);
+
+		assertThat(buffer.since(CHAT, 2, 10, () -> 7)).isNull();
+		assertThat(buffer.since(CHAT, 5, 10, () -> 6)).isNull();
+		// a full page does not need to know what comes after it
+		assertThat(seqs(buffer.since(CHAT, 0, 2, () -> 7))).containsExactly(1L, 2L, 3L);
+	}
+
+	@Test
+	void ignoresRedeliveredEvents() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		appendSeqs(buffer, CHAT, 1, 3);
+		buffer.append(event(CHAT, 2));
+		buffer.append(event(CHAT, 4));
+
+		assertThat(seqs(buffer.since(CHAT, 0, 10, () -> 4))).containsExactly(1L, 2L, 3L, 4L);
+	}
+
+	@Test
+	void evictsChatsBeyondTheBound() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 2, meterRegistry);
+		for (long chatId = 1; chatId <= 5; chatId++) {
+			buffer.append(event(chatId, 1));
+		}
+
+		assertThat(counter("chat_ws_replay_evictions_total")).isEqualTo(3);
+		assertThat(meterRegistry.get("chat_ws_replay_chats").gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	void unknownChatsAndUnsequencedEventsMiss() {
+		ReplayBuffer buffer = new ReplayBuffer(8, 100, meterRegistry);
+		buffer.append(new NewMessageFanoutEvent(1L, CHAT, 7L, "hi", "2025-01-01T12:00:00Z", 0L, 0L, null));
+
+		assertThat(buffer.since(CHAT, 0, 10, () -> 0)).isNull();
+	}
+
+	private static void appendSeqs(ReplayBuffer buffer, long chatId, long from, long to) {
+		for (long seq = from; seq <= to; seq++) {
+			buffer.append(event(chatId, seq));
+		}
+	}
+
+	private static NewMessageFanoutEvent event(long chatId, long seq) {
+		return new NewMessageFanoutEvent(1_000L + seq, chatId, 7L, "m" + seq, "2025-01-01T12:00:00Z", 0L, 0L, seq);
+	}
+
+	private static List<Long> seqs(List<NewMessageFanoutEvent> events) {
+		assertThat(events).isNotNull();
+		return events.stream().map(NewMessageFanoutEvent::seq).toList();
+	}
+
+	private double counter(String name) {
+		return meterRegistry.get(name).counter().count();
+	}
+}
@@ -0,0 +1,126 @@
+package com.punith.chat.ws;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SessionRegistryTest {
+
+	@Test
+	void reportsFirstAndLastSessionOfAUser() {
+		SessionRegistry registry = new SessionRegistry(16);
+		OutboundSession phone = session();
+		OutboundSession laptop = session();
+
+		assertThat(registry.add(7L, phone)).isTrue();
+		assertThat(registry.add(7L, laptop)).isFalse();
+		assertThat(registry.add(7L, laptop)).isFalse();
+		assertThat(registry.sessions(7L)).containsExactlyInAnyOrder(phone, laptop);
+		assertThat(registry.sessionCount()).isEqualTo(2);
+		assertThat(registry.userCount()).isEqualTo(1);
+
+		assertThat(registry.remove(7L, phone)).isFalse();
+		assertThat(registry.remove(7L, phone)).isFalse();
+		assertThat(registry.remove(7L, laptop)).isTrue();
+		assertThat(registry.sessions(7L)).isEmpty();
+		assertThat(registry.sessionCount()).isZero();
+		assertThat(registry.userCount()).isZero();
+	}
+
+	@Test
+	void removingWithoutASessionOnlyChecksForOthers() {
+		SessionRegistry registry = new SessionRegistry(16);
+		registry.add(7L, session());
+
+		assertThat(registry.remove(7L, null)).isFalse();
+		assertThat(registry.remove(8L, null)).isTrue();
+		assertThat(registry.sessionCount()).isEqualTo(1);
+	}
+
+	@Test
+	void handlesNegativeAndExtremeIds() {
+		SessionRegistry registry = new SessionRegistry(16);
+		long[] ids = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+		for (long id : ids) {
+			registry.add(id, session());
+		}
+
+		for (long id : ids) {
+			assertThat(registry.sessions(id)).hasSize(1);
+		}
+		assertThat(registry.userCount()).isEqualTo(ids.length);
+	}
+
+	/**
+	 * Many users on a registry sized for far fewer, so stripes collide, resize, and delete with backward shifts
+	 * through long probe chains; checked against a plain map after every step.
+	 */
+	@Test
+	void matchesAMapUnderRandomAddsAndRemoves() {
+		SessionRegistry registry = new SessionRegistry(16);
+		Map<Long, List<OutboundSession>> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int step = 0; step < 50_000; step++) {
+			long userId = random.nextInt(3_000);
+			List<OutboundSession> sessions = expected.computeIfAbsent(userId, id -> new ArrayList<>());
+			if (sessions.isEmpty() || random.nextInt(3) > 0 && sessions.size() < 4) {
+				OutboundSession session = session();
+				assertThat(registry.add(userId, session)).isEqualTo(sessions.isEmpty());
+				sessions.add(session);
+			} else {
+				OutboundSession session = sessions.remove(random.nextInt(sessions.size()));
+				assertThat(registry.remove(userId, session)).isEqualTo(sessions.isEmpty());
+			}
+			assertThat(registry.sessions(userId)).containsExactlyInAnyOrderElementsOf(sessions);
+		}
+
+		int sessionCount = 0;
+		int userCount = 0;
+		for (Map.Entry<Long, List<OutboundSession>> entry : expected.entrySet()) {
+			assertThat(registry.sessions(entry.getKey())).containsExactlyInAnyOrderElementsOf(entry.getValue());
+			sessionCount += entry.getValue().size();
+			userCount += entry.getValue().isEmpty() ? 0 : 1;
+		}
+		assertThat(registry.sessionCount()).isEqualTo(sessionCount);
+		assertThat(registry.userCount()).isEqualTo(userCount);
+
+		Set<OutboundSession> visited = new HashSet<>();
+		registry.forEach((userId, session) -> {
+			assertThat(expected.get(userId)).contains(session);
+			visited.add(session);
+		});
+		assertThat(visited).hasSize(sessionCount);
+	}
+
+	@Test
+	void visitsTheSessionsOfAGroup() {
+		SessionRegistry registry = new SessionRegistry(16);
+		OutboundSession a = session();
+		OutboundSession b1 = session();
+		OutboundSession b2 = session();
+		registry.add(1L, a);
+		registry.add(2L, b1);
+		registry.add(2L, b2);
+		registry.add(3L, session());
+
+		List<OutboundSession> visited = new ArrayList<>();
+		registry.forEachSession(new long[]{1L, 2L, 4L}, visited::add);
+
+		assertThat(visited).containsExactlyInAnyOrder(a, b1, b2);
+	}
+
+	private static OutboundSession session() {
+		return new OutboundSession(mock(WebSocketSession.class), null);
+	}
+}
@@ -0,0 +1,150 @@
+package com.punith.chat.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punith.chat.messaging.ChatMessageEvent;
+import com.punith.chat.messaging.codec.EventCodec;
+import com.punith.chat.messaging.codec.EventEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WsInboundDecoderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final WsInboundDecoder decoder = new WsInboundDecoder(objectMapper);
+
+	@Test
+	void plainBodyIsASliceOfTheFrame() throws Exception {
+		byte[] frame = utf8("{\"type\":\"SEND_MESSAGE\",\"chatId\":42,\"body\":\"héllo ✓ 😀\",\"clientMessageId\":\"c-1\"}");
+
+		WsInboundMessage message = decoder.decode(frame);
+
+		assertThat(message.type).isEqualTo("SEND_MESSAGE");
+		assertThat(message.chatId).isEqualTo(42L);
+		assertThat(message.clientMessageId).isEqualTo("c-1");
+		assertThat(message.body()).isSameAs(frame);
+		assertThat(body(message)).isEqualTo("héllo ✓ 😀");
+	}
+
+	@Test
+	void escapedBodyIsUnescapedIntoItsOwnArray() throws Exception {
+		byte[] frame = utf8("{\"type\":\"SEND_MESSAGE\",\"chatId\":1,\"body\":\"say \\\"hi\\\"\\n\\u00e9\\\\\"}");
+
+		WsInboundMessage message = decoder.decode(frame);
+
+		assertThat(message.body()).isNotSameAs(frame);
+		assertThat(message.bodyOffset()).isZero();
+		assertThat(body(message)).isEqualTo("say \"hi\"\né\\");
+	}
+
+	@Test
+	void emptyAndAbsentBodies() throws Exception {
+		WsInboundMessage empty = decoder.decode(utf8("{\"type\":\"SEND_MESSAGE\",\"body\":\"\"}"));
+		WsInboundMessage absent = decoder.decode(utf8("{\"type\":\"SEND_MESSAGE\",\"body\":null}"));
+
+		assertThat(empty.hasBody()).isTrue();
+		assertThat(body(empty)).isEmpty();
+		assertThat(absent.hasBody()).isFalse();
+	}
+
+	@Test
+	void readsQuotedIdsLikeNumbers() throws Exception {
+		WsInboundMessage message = decoder.decode(utf8("""
+				{"type":"READ_MESSAGES","chatId":"42","messageIds":[1,"2"," 3 "],"upToMessageId":"9007199254740993",
+				 "afterSeq":7,"limit":"25","userIds":[]}
+				"""));
+
+		assertThat(message.chatId).isEqualTo(42L);
+		assertThat(message.messageIds).containsExactly(1L, 2L, 3L);
+		assertThat(message.upToMessageId).isEqualTo(9_007_199_254_740_993L);
+		assertThat(message.afterSeq).isEqualTo(7L);
+		assertThat(message.limit).isEqualTo(25);
+		assertThat(message.userIds).isEmpty();
+	}
+
+	@Test
+	void growsIdArraysPastTheirInitialSize() throws Exception {
+		long[] ids = new long[100];
+		Arrays.setAll(ids, i -> 1_000L + i);
+
+		WsInboundMessage message = decoder.decode(objectMapper.writeValueAsBytes(
+				Map.of("type", "PRESENCE_QUERY", "userIds", ids)));
+
+		assertThat(message.userIds).containsExactly(ids);
+	}
+
+	@Test
+	void missingAndNullFieldsStayAbsent() throws Exception {
+		WsInboundMessage message = decoder.decode(utf8("{\"type\":\"TYPING\",\"chatId\":null}"));
+
+		assertThat(message.chatId).isEqualTo(WsInboundMessage.ABSENT);
+		assertThat(message.upToMessageId).isEqualTo(WsInboundMessage.ABSENT);
+		assertThat(message.messageIds).isNull();
+		assertThat(message.limit).isZero();
+		assertThat(message.typing).isTrue();
+	}
+
+	@Test
+	void skipsUnknownFieldsOfAnyShape() throws Exception {
+		WsInboundMessage message = decoder.decode(utf8("""
+				{"extra":{"nested":[1,{"body":"not this"}]},"type":"TYPING","list":[[]],"chatId":5,"typing":false,"n":1.5}
+				"""));
+
+		assertThat(message.type).isEqualTo("TYPING");
+		assertThat(message.chatId).isEqualTo(5L);
+		assertThat(message.typing).isFalse();
+		assertThat(message.hasBody()).isFalse();
+	}
+
+	@Test
+	void rejectsMalformedFrames() {
+		assertThatThrownBy(() -> decoder.decode(utf8("[1,2]"))).isInstanceOf(JsonProcessingException.class);
+		assertThatThrownBy(() -> decoder.decode(utf8("{\"type\":\"SEND_MESSAGE\",\"body\":\"cut")))
+				.isInstanceOf(JsonProcessingException.class);
+		assertThatThrownBy(() -> decoder.decode(utf8("{\"chatId\":\"forty-two\"}")))
+				.isInstanceOf(JsonProcessingException.class);
+		assertThatThrownBy(() -> decoder.decode(utf8("{\"chatId\":true}")))
+				.isInstanceOf(JsonProcessingException.class);
+		assertThatThrownBy(() -> decoder.decode(utf8("{\"messageIds\":5}")))
+				.isInstanceOf(JsonProcessingException.class);
+		assertThatThrownBy(() -> decoder.decode(utf8("{\"body\":7}")))
+				.isInstanceOf(JsonProcessingException.class);
+		// invalid UTF-8 inside the body is caught while scanning past it
+		byte[] badUtf8 = utf8("{\"body\":\"ab\"}");
+		badUtf8[10] = (byte) 0xC3;
+		assertThatThrownBy(() -> decoder.decode(badUtf8)).isInstanceOf(JsonProcessingException.class);
+	}
+
+	@Test
+	void encodingTheSliceMatchesEncodingTheEvent() throws Exception {
+		for (String text : new String[]{"héllo ✓ 😀", "say \"hi\"\n\ttab", ""}) {
+			byte[] frame = objectMapper.writeValueAsBytes(Map.of("type", "SEND_MESSAGE", "body", text));
+			WsInboundMessage message = decoder.decode(frame);
+			ChatMessageEvent event = new ChatMessageEvent(42L, 7L, text, "c-1", 1_700_000_000_000L);
+
+			EventCodec binary = new EventCodec(objectMapper, EventEncoding.BINARY);
+			byte[] sliced = binary.encodeChatMessage(42L, 7L,
+					message.body(), message.bodyOffset(), message.bodyLength(), "c-1", 1_700_000_000_000L);
+			assertThat(sliced).isEqualTo(binary.encode(event));
+
+			EventCodec json = new EventCodec(objectMapper, EventEncoding.JSON);
+			byte[] slicedJson = json.encodeChatMessage(42L, 7L,
+					message.body(), message.bodyOffset(), message.bodyLength(), "c-1", 1_700_000_000_000L);
+			assertThat(json.decode(slicedJson, ChatMessageEvent.class)).isEqualTo(event);
+		}
+	}
+
+	private static String body(WsInboundMessage message) {
+		return new String(message.body(), message.bodyOffset(), message.bodyLength(), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] utf8(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+}